@@ -0,0 +1,73 @@
+package org.superbiz.rest;
+
+import java.io.Serializable;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * The fields we use of an issue of the _Github_ issues resource.
+ */
+public class GithubIssue implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long number;
+	private final String title;
+	private final String state;
+	private final String user;
+	private final String htmlUrl;
+	private final int comments;
+
+	public GithubIssue(long number, String title, String state, String user, String htmlUrl, int comments) {
+		this.number = number;
+		this.title = title;
+		this.state = state;
+		this.user = user;
+		this.htmlUrl = htmlUrl;
+		this.comments = comments;
+	}
+
+	static GithubIssue fromJson(JSONObject issue) throws JSONException {
+		JSONObject user = issue.optJSONObject("user");
+		return new GithubIssue(issue.getLong("number"), issue.getString("title"), issue.getString("state"),
+				user == null ? null : user.optString("login", null), issue.optString("html_url", null),
+				issue.optInt("comments"));
+	}
+
+	public long getNumber() {
+		return number;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * +open+ or +closed+.
+	 */
+	public String getState() {
+		return state;
+	}
+
+	/**
+	 * Login of the user who opened the issue.
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	public String getHtmlUrl() {
+		return htmlUrl;
+	}
+
+	public int getComments() {
+		return comments;
+	}
+
+	@Override
+	public String toString() {
+		return "GithubIssue [number=" + number + ", title=" + title + ", state=" + state + ", user=" + user + "]";
+	}
+
+}
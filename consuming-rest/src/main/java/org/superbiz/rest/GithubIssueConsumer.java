@@ -0,0 +1,10 @@
+package org.superbiz.rest;
+
+/**
+ * Receives the issues of a repository one at a time, as soon as each one is parsed.
+ */
+public interface GithubIssueConsumer {
+
+	void accept(GithubIssue issue);
+
+}
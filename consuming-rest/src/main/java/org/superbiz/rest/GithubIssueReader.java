@@ -0,0 +1,63 @@
+package org.superbiz.rest;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * Reads a JSON array of issues incrementally. Only the issue being read is held in memory, each one is mapped and
+ * handed to the consumer as soon as its closing brace is read.
+ */
+final class GithubIssueReader {
+
+	private GithubIssueReader() {
+	}
+
+	/**
+	 * Reads +reader+ to the end and returns the number of issues handed to +consumer+.
+	 */
+	static int read(Reader reader, GithubIssueConsumer consumer) throws IOException, JSONException {
+		StringBuilder issue = new StringBuilder();
+		int depth = 0;
+		boolean inString = false;
+		boolean escaped = false;
+		int count = 0;
+
+		char[] buffer = new char[8192];
+		for (int read; (read = reader.read(buffer)) != -1;) {
+			for (int i = 0; i < read; i++) {
+				char c = buffer[i];
+				if (inString) {
+					if (escaped) {
+						escaped = false;
+					} else if (c == '\\') {
+						escaped = true;
+					} else if (c == '"') {
+						inString = false;
+					}
+				} else if (c == '"') {
+					inString = true;
+				} else if (c == '{' || c == '[') {
+					depth++;
+				} else if (c == '}' || c == ']') {
+					depth--;
+					if (depth == 1 && c == '}') {
+						issue.append(c);
+						consumer.accept(GithubIssue.fromJson(new JSONObject(issue.toString())));
+						issue.setLength(0);
+						count++;
+						continue;
+					}
+				}
+				// depth 1 is the array itself, issues are the objects inside it
+				if (depth > 1) {
+					issue.append(c);
+				}
+			}
+		}
+		return count;
+	}
+
+}
@@ -1,20 +1,329 @@
 package org.superbiz.rest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import javax.ejb.Stateless;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.ConnectionType;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
+import org.codehaus.jettison.json.JSONException;
 
-@Stateless
+/**
+ * Client of the _Github_ issues resource.
+ * 
+ * One thread safe +WebClient+ is created at startup and shared by every call. Its conduit keeps connections alive so
+ * calls reuse them instead of opening a new one each time, and no more than +maxConnectionsPerHost+ calls run at once.
+ * The conduit relies on the keep alive cache of the JDK, which holds +http.maxConnections+ idle connections per host,
+ * 5 unless that system property says otherwise. +maxConnectionsPerHost+ defaults to the same 5, raising it only pays
+ * off when +http.maxConnections+ is raised too, otherwise the extra connections are closed after every call.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class GithubRestConnection {
 
+	private static final Pattern LAST_PAGE = Pattern.compile("<[^>]*[?&]page=(\\d+)[^>]*>\\s*;\\s*rel=\"last\"");
+	private static final int RATE_LIMIT_RETRIES = 3;
+	private static final String HTTP_DATE = "EEE, dd MMM yyyy HH:mm:ss zzz";
+	// how long a refused call waits when the response does not say until when
+	private static final long DEFAULT_RATE_LIMIT_WAIT = 1000;
+
 	@Resource
 	private String url;
-	
-	public void getData() {
-		
-		WebClient webClient = WebClient.create(url);
-		webClient = null;
+
+	@Resource
+	private Long connectTimeout = 5000L;
+
+	@Resource
+	private Long receiveTimeout = 30000L;
+
+	@Resource
+	private Integer maxConnectionsPerHost = 5;
+
+	@Resource
+	private Integer issuesPerPage = 100;
+
+	@Resource
+	private Integer pageParallelism = 4;
+
+	@Resource
+	private Long maxRateLimitWait = 60000L;
+
+	private WebClient client;
+	private Semaphore connections;
+	private ExecutorService pageFetcher;
+
+	// epoch millis before which the rate limit does not let any call through
+	private volatile long rateLimitReset;
+
+	@PostConstruct
+	void createClient() {
+		// thread safe clients keep the path and headers of a call in a thread local
+		client = WebClient.create(url, Collections.emptyList(), true);
+
+		HTTPClientPolicy policy = new HTTPClientPolicy();
+		policy.setConnection(ConnectionType.KEEP_ALIVE);
+		policy.setConnectionTimeout(connectTimeout);
+		policy.setReceiveTimeout(receiveTimeout);
+		policy.setAllowChunking(false);
+		HTTPConduit conduit = WebClient.getConfig(client).getHttpConduit();
+		conduit.setClient(policy);
+
+		connections = new Semaphore(maxConnectionsPerHost, true);
+		pageFetcher = Executors.newFixedThreadPool(pageParallelism, new ThreadFactory() {
+			private final AtomicInteger threads = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "github-pages-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@PreDestroy
+	void close() {
+		pageFetcher.shutdownNow();
+	}
+
+	/**
+	 * Issues of the first page of +repos/{owner}/{repository}/issues+.
+	 */
+	public List<GithubIssue> getIssues(String owner, String repository) {
+		final List<GithubIssue> issues = new ArrayList<>();
+		fetchPage(owner, repository, 1, new GithubIssueConsumer() {
+			@Override
+			public void accept(GithubIssue issue) {
+				issues.add(issue);
+			}
+		});
+		return issues;
+	}
+
+	/**
+	 * Hands every issue of +repos/{owner}/{repository}/issues+ to +consumer+ and returns how many there were.
+	 * 
+	 * The first page tells through its +Link+ header how many pages there are, the others are then fetched by
+	 * +pageParallelism+ threads at most. Issues are parsed and handed over while their page is being read, so
+	 * +consumer+ is called from several threads at once and in no particular order.
+	 */
+	public int forEachIssue(final String owner, final String repository, final GithubIssueConsumer consumer) {
+		Page first = fetchPage(owner, repository, 1, consumer);
+
+		List<Future<Page>> pages = new ArrayList<>();
+		try {
+			for (int page = 2; page <= first.lastPage; page++) {
+				final int number = page;
+				pages.add(pageFetcher.submit(new Callable<Page>() {
+					@Override
+					public Page call() {
+						return fetchPage(owner, repository, number, consumer);
+					}
+				}));
+			}
+
+			int issues = first.issues;
+			for (Future<Page> page : pages) {
+				issues += page.get().issues;
+			}
+			return issues;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			// pages still pending after a failure are not needed anymore
+			for (Future<Page> page : pages) {
+				page.cancel(true);
+			}
+		}
+	}
+
+	private Page fetchPage(String owner, String repository, int page, GithubIssueConsumer consumer) {
+		for (int attempt = 1;; attempt++) {
+			awaitRateLimit();
+			acquire();
+			try {
+				Response response = client.path("repos").path(owner).path(repository).path("issues")
+						.query("per_page", issuesPerPage)
+						.query("page", page)
+						.accept(MediaType.APPLICATION_JSON_TYPE)
+						.get();
+				try (InputStream body = (InputStream) response.getEntity()) {
+					boolean rateLimited = recordRateLimit(response);
+					if (rateLimited && attempt < RATE_LIMIT_RETRIES) {
+						continue;
+					}
+					if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+						throw new WebApplicationException(response.getStatus());
+					}
+					// the body is read to the end, otherwise the connection can not go back to the keep alive cache
+					int issues = GithubIssueReader.read(new InputStreamReader(body, StandardCharsets.UTF_8), consumer);
+					return new Page(issues, lastPage(response, page));
+				}
+			} catch (IOException | JSONException e) {
+				throw new IllegalStateException("Cannot read page " + page + " of the issues of " + owner + "/"
+						+ repository, e);
+			} finally {
+				client.reset();
+				connections.release();
+			}
+		}
+	}
+
+	/**
+	 * Remembers until when the rate limit is exhausted and tells whether this response was refused because of it.
+	 * +Retry-After+ wins over +X-RateLimit-Reset+, and a refused call without a usable one of them waits
+	 * +DEFAULT_RATE_LIMIT_WAIT+ milliseconds.
+	 */
+	private boolean recordRateLimit(Response response) {
+		String remaining = header(response, "X-RateLimit-Remaining");
+		String retryAfter = header(response, "Retry-After");
+
+		int status = response.getStatus();
+		boolean refused = status == 429 || (status == Response.Status.FORBIDDEN.getStatusCode()
+				&& ("0".equals(remaining) || retryAfter != null));
+
+		long until = retryAfter(retryAfter);
+		if (until < 0 && (refused || "0".equals(remaining))) {
+			until = rateLimitReset(header(response, "X-RateLimit-Reset"));
+		}
+		if (until < 0 && refused) {
+			until = System.currentTimeMillis() + DEFAULT_RATE_LIMIT_WAIT;
+		}
+		if (until > 0) {
+			rateLimitReset = Math.max(rateLimitReset, until);
+		}
+		return refused;
+	}
+
+	// Retry-After: 120 or Retry-After: Wed, 21 Oct 2015 07:28:00 GMT, -1 when missing or unreadable
+	private static long retryAfter(String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return System.currentTimeMillis() + Long.parseLong(value.trim()) * 1000;
+		} catch (NumberFormatException e) {
+			SimpleDateFormat date = new SimpleDateFormat(HTTP_DATE, Locale.US);
+			date.setTimeZone(TimeZone.getTimeZone("GMT"));
+			try {
+				return date.parse(value.trim()).getTime();
+			} catch (ParseException notADate) {
+				return -1;
+			}
+		}
+	}
+
+	// X-RateLimit-Reset: epoch seconds, -1 when missing or unreadable
+	private static long rateLimitReset(String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value.trim()) * 1000;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private void awaitRateLimit() {
+		long wait = rateLimitReset - System.currentTimeMillis();
+		if (wait <= 0) {
+			return;
+		}
+		if (wait > maxRateLimitWait) {
+			throw new IllegalStateException("Rate limit of " + url + " exhausted for " + wait + " ms");
+		}
+		try {
+			Thread.sleep(wait);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void acquire() {
+		try {
+			if (!connections.tryAcquire(connectTimeout, TimeUnit.MILLISECONDS)) {
+				throw new IllegalStateException("No connection to " + url + " available in " + connectTimeout + " ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// Link: <https://api.github.com/repositories/1/issues?page=2>; rel="next", <...?page=34>; rel="last"
+	private static int lastPage(Response response, int page) {
+		String link = header(response, "Link");
+		if (link == null) {
+			return page;
+		}
+		Matcher last = LAST_PAGE.matcher(link);
+		return last.find() ? Integer.parseInt(last.group(1)) : page;
+	}
+
+	// servers do not agree on the case of header names, and the client splits values like Link at commas
+	private static String header(Response response, String name) {
+		for (Map.Entry<String, List<Object>> header : response.getMetadata().entrySet()) {
+			if (header.getKey() != null && header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+				StringBuilder value = new StringBuilder();
+				for (Object part : header.getValue()) {
+					value.append(value.length() == 0 ? "" : ", ").append(part);
+				}
+				return value.toString();
+			}
+		}
+		return null;
 	}
-	
+
+	private static final class Page {
+
+		private final int issues;
+		private final int lastPage;
+
+		Page(int issues, int lastPage) {
+			this.issues = issues;
+			this.lastPage = lastPage;
+		}
+
+	}
+
 }
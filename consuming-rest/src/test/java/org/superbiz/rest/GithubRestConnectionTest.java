@@ -1,6 +1,16 @@
 package org.superbiz.rest;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.ejb.EJB;
+import javax.ejb.EJBException;
 
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.junit.Arquillian;
@@ -10,6 +20,7 @@ import org.jboss.shrinkwrap.api.asset.StringAsset;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.jboss.shrinkwrap.descriptor.api.Descriptors;
 import org.jboss.shrinkwrap.descriptor.api.ejbjar31.EjbJarDescriptor;
+import org.junit.AfterClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.superbiz.rest.GithubRestConnection;
@@ -34,26 +45,42 @@ import org.superbiz.rest.GithubRestConnection;
  * 
  * So we need a way to inject the host depending on the environment where tests are being run. If your client is implemented as a _Session Bean_ you can use the +ejb-jar.xml+ file to inject it. Let's see an example of how to do it.
  * 
+ * include::src/main/java/org/superbiz/rest/GithubRestConnection.java[]
  * 
+ * Creating a client is not free, and neither is opening a connection. The bean is a +@Singleton+, so one thread safe +WebClient+ is created at startup and shared by every call.
+ * Its conduit keeps connections alive, and a semaphore caps the calls running against the host at +maxConnectionsPerHost+, 5 by default like
+ * the +http.maxConnections+ idle connections the JDK keeps per host.
+ * Timeouts and the connection limit are injected with +@Resource+ like +url+, and the field initializers are the defaults when +ejb-jar.xml+ sets nothing.
  * 
+ * To list every issue of a large repository, +forEachIssue+ reads the page count from the +Link+ header of the first page and fetches the other pages in parallel, +pageParallelism+ at most.
+ * When the +X-RateLimit-*+ headers say the rate limit is exhausted, calls wait until it is reset. A +Retry-After+ header, in seconds or
+ * as a date, says the same.
+ * Each page is parsed while it is read, and every issue goes straight to a +GithubIssueConsumer+ instead of being collected in a list.
  * 
+ * Tests run against +GithubStubServer+, a _JDK_ +HttpServer+ that serves canned issues on +localhost+.
  * 
  */
 @RunWith(Arquillian.class)
 public class GithubRestConnectionTest {
 
-	@Deployment static JavaArchive createDeployment() {
+	@Deployment static JavaArchive createDeployment() throws IOException {
+		
+		github = new GithubStubServer(); // started first, the deployment needs its port
+		github.start();
 		
 		JavaArchive javaArchive = ShrinkWrap.create(JavaArchive.class)
 				.addClass(GithubRestConnection.class)
-				.addAsManifestResource(new StringAsset(descriptor().exportAsString()), "ejb-jar.xml") // <1> +ejb-jar.xml+ file must be at _Manifest_ folder. We use _ShrinkWrap Descriptors_ to generate an _ejb-jar_ file.
+				.addClass(GithubIssue.class)
+				.addClass(GithubIssueConsumer.class)
+				.addClass(GithubIssueReader.class)
+				.addAsManifestResource(new StringAsset(descriptor(github.getUrl()).exportAsString()), "ejb-jar.xml") // <1> +ejb-jar.xml+ file must be at _Manifest_ folder. We use _ShrinkWrap Descriptors_ to generate an _ejb-jar_ file.
 				.addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
 				
 				return javaArchive;
 		
 	}
 	
-	public static  EjbJarDescriptor descriptor() {
+	public static  EjbJarDescriptor descriptor(String url) {
 	    return Descriptors.create(EjbJarDescriptor.class)
 	    		.getOrCreateEnterpriseBeans()
 				.getOrCreateSession()
@@ -61,20 +88,97 @@ public class GithubRestConnectionTest {
 				.createEnvEntry()
 					.envEntryName("org.superbiz.rest.GithubRestConnection/url") // <3> In case you use +resource+ annotation without a name the whole classname and field name separated by slash '/' should be provided.
 					.envEntryType("java.lang.String") // <4> The type of the attribute.
-					.envEntryValue("http://localhost:8080") // <5> The value of the attribute, that in this case because of test environment, _localhost_ is used. 
+					.envEntryValue(url) // <5> The value of the attribute, that in this case because of test environment, is the stub server listening on a free port of _localhost_.
+					.up()
+				.createEnvEntry()
+					.envEntryName("org.superbiz.rest.GithubRestConnection/receiveTimeout")
+					.envEntryType("java.lang.Long")
+					.envEntryValue("1000") // <6> Other attributes are overridden the same way, here the stub answers fast so we can wait less.
+					.up()
+				.createEnvEntry()
+					.envEntryName("org.superbiz.rest.GithubRestConnection/issuesPerPage")
+					.envEntryType("java.lang.Integer")
+					.envEntryValue("25")
+					.up()
+				.createEnvEntry()
+					.envEntryName("org.superbiz.rest.GithubRestConnection/pageParallelism")
+					.envEntryType("java.lang.Integer")
+					.envEntryValue("3")
 					.up()
 				.up().up();
 	                
 	}
 	
+	private static GithubStubServer github;
+	
+	@AfterClass
+	public static void stopGithub() {
+		github.stop();
+	}
+	
 	@EJB
 	GithubRestConnection restConnection;
 	
 	@Test
-	public void execute() {
+	public void shouldFetchAndMapIssues() {
+		
+		List<GithubIssue> issues = restConnection.getIssues("tomitribe", "community");
+		
+		assertThat(issues.size(), is(2));
+		GithubIssue issue = issues.get(1);
+		assertThat(issue.getNumber(), is(1L));
+		assertThat(issue.getTitle(), is("Document the \"ejb-jar.xml\" injection"));
+		assertThat(issue.getState(), is("closed"));
+		assertThat(issue.getUser(), is("tomitribe"));
+		
+	}
+	
+	@Test
+	public void shouldReuseConnections() {
+		
+		github.getClientPorts().clear();
+		for (int i = 0; i < 5; i++) {
+			restConnection.getIssues("tomitribe", "community");
+		}
+		
+		assertThat(github.getClientPorts().size(), is(1));
+		
+	}
+	
+	@Test
+	public void shouldWaitUntilTheRetryAfterDate() {
+		
+		List<GithubIssue> issues = restConnection.getIssues("tomitribe", "throttled");
+		
+		assertThat(issues.size(), is(2));
+		assertThat(github.isThrottled(), is(true));
+		
+	}
+	
+	@Test(expected = EJBException.class)
+	public void shouldTimeOutSlowResponses() {
+		
+		restConnection.getIssues("tomitribe", "slow");
+		
+	}
+	
+	@Test
+	public void shouldStreamEveryPageInParallel() {
+		
+		final Set<Long> numbers = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		int issues = restConnection.forEachIssue("tomitribe", "large", new GithubIssueConsumer() {
+			@Override
+			public void accept(GithubIssue issue) {
+				numbers.add(issue.getNumber());
+			}
+		});
 		
-		restConnection.getData();
+		assertThat(issues, is(GithubStubServer.LARGE_REPOSITORY_ISSUES));
+		assertThat(numbers.size(), is(GithubStubServer.LARGE_REPOSITORY_ISSUES));
+		assertThat(github.getMaxPagesInFlight() > 1, is(true));
+		assertThat(github.getMaxPagesInFlight() <= 3, is(true));
+		assertThat(github.isRateLimited(), is(true));
 		
 	}
 	
-}
+}
\ No newline at end of file
@@ -0,0 +1,204 @@
+package org.superbiz.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stand-in for +api.github.com+ on +localhost+, serving canned issues. The +large+ repository is paginated like
+ * _Github_ does, with a +Link+ header, and refuses one page because of the rate limit. The +throttled+ repository
+ * refuses its first call with a +Retry-After+ date.
+ */
+public class GithubStubServer {
+
+	public static final int LARGE_REPOSITORY_ISSUES = 230;
+	public static final int RATE_LIMITED_PAGE = 3;
+
+	private static final String ISSUES = "["
+			+ "{\"number\":2,\"title\":\"Add a consuming REST example\",\"state\":\"open\","
+			+ "\"user\":{\"login\":\"lordofthejars\"},\"html_url\":\"https://github.com/tomitribe/community/issues/2\",\"comments\":3},"
+			+ "{\"number\":1,\"title\":\"Document the \\\"ejb-jar.xml\\\" injection\",\"state\":\"closed\","
+			+ "\"user\":{\"login\":\"tomitribe\"},\"html_url\":\"https://github.com/tomitribe/community/issues/1\",\"comments\":0}"
+			+ "]";
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final Set<Integer> clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+	private final AtomicInteger pagesInFlight = new AtomicInteger();
+	private final AtomicInteger maxPagesInFlight = new AtomicInteger();
+	private final AtomicBoolean rateLimited = new AtomicBoolean();
+	private final AtomicBoolean throttled = new AtomicBoolean();
+
+	public GithubStubServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0); // any free port, see getUrl()
+		server.createContext("/repos/tomitribe/community/issues", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				clientPorts.add(exchange.getRemoteAddress().getPort());
+				send(exchange, 200, ISSUES);
+			}
+		});
+		server.createContext("/repos/tomitribe/throttled/issues", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if (throttled.compareAndSet(false, true)) {
+					SimpleDateFormat date = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+					date.setTimeZone(TimeZone.getTimeZone("GMT"));
+					exchange.getResponseHeaders().set("Retry-After", date.format(new Date(System.currentTimeMillis() + 2000)));
+					send(exchange, 429, "{\"message\":\"Too many requests\"}");
+					return;
+				}
+				send(exchange, 200, ISSUES);
+			}
+		});
+		server.createContext("/repos/tomitribe/slow/issues", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(2000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				send(exchange, 200, "[]");
+			}
+		});
+		server.createContext("/repos/tomitribe/large/issues", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				int inFlight = pagesInFlight.incrementAndGet();
+				try {
+					updateMax(inFlight);
+					page(exchange);
+				} finally {
+					pagesInFlight.decrementAndGet();
+				}
+			}
+		});
+		server.setExecutor(executor);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	public String getUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Client side ports of the connections the issues were served on, one per connection.
+	 */
+	public Set<Integer> getClientPorts() {
+		return clientPorts;
+	}
+
+	/**
+	 * Highest number of pages of the large repository served at the same time.
+	 */
+	public int getMaxPagesInFlight() {
+		return maxPagesInFlight.get();
+	}
+
+	/**
+	 * Whether +RATE_LIMITED_PAGE+ was refused once with an exhausted rate limit, as _Github_ does.
+	 */
+	public boolean isRateLimited() {
+		return rateLimited.get();
+	}
+
+	/**
+	 * Whether the +throttled+ repository refused a call with a +Retry-After+ date.
+	 */
+	public boolean isThrottled() {
+		return throttled.get();
+	}
+
+	private void updateMax(int inFlight) {
+		for (int max; (max = maxPagesInFlight.get()) < inFlight;) {
+			if (maxPagesInFlight.compareAndSet(max, inFlight)) {
+				return;
+			}
+		}
+	}
+
+	private void page(HttpExchange exchange) throws IOException {
+		Map<String, String> query = query(exchange.getRequestURI());
+		int perPage = Integer.parseInt(query.get("per_page"));
+		int page = Integer.parseInt(query.get("page"));
+		int lastPage = (LARGE_REPOSITORY_ISSUES + perPage - 1) / perPage;
+
+		if (page == RATE_LIMITED_PAGE && rateLimited.compareAndSet(false, true)) {
+			exchange.getResponseHeaders().set("X-RateLimit-Remaining", "0");
+			exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() / 1000 + 1));
+			send(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+			return;
+		}
+
+		try {
+			Thread.sleep(50); // long enough for the pages to overlap
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		StringBuilder issues = new StringBuilder("[");
+		for (int number = (page - 1) * perPage + 1; number <= Math.min(page * perPage, LARGE_REPOSITORY_ISSUES); number++) {
+			if (issues.length() > 1) {
+				issues.append(',');
+			}
+			issues.append("{\"number\":").append(number)
+					.append(",\"title\":\"Issue {").append(number).append("} [large]\",\"state\":\"open\",")
+					.append("\"labels\":[{\"name\":\"bug\"}],\"user\":{\"login\":\"tomitribe\"},\"comments\":0}");
+		}
+		issues.append(']');
+
+		String resource = "<" + getUrl() + "/repos/tomitribe/large/issues?per_page=" + perPage + "&page=";
+		exchange.getResponseHeaders().set("Link", resource + Math.min(page + 1, lastPage) + ">; rel=\"next\", "
+				+ resource + lastPage + ">; rel=\"last\"");
+		exchange.getResponseHeaders().set("X-RateLimit-Remaining", "4999");
+		send(exchange, 200, issues.toString());
+	}
+
+	private static Map<String, String> query(URI uri) {
+		Map<String, String> parameters = new HashMap<>();
+		for (String parameter : uri.getQuery().split("&")) {
+			String[] nameAndValue = parameter.split("=", 2);
+			parameters.put(nameAndValue[0], nameAndValue[1]);
+		}
+		return parameters;
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		// a known length lets the client keep the connection open for the next call
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+}
@@ -13,7 +13,19 @@ import javax.ejb.Startup;
         user="sa",
         password="",
         databaseName="seriesdb",
-        properties = {"connectionAttributes=;create=true"},
+        initialPoolSize = 5,
+        minPoolSize = 5,
+        properties = {
+            "connectionAttributes=;create=true",
+            "MaxActive=30",
+            "MaxIdle=30",
+            "MaxWaitTime=5000",
+            "MinEvictableIdleTime=5 minutes",
+            "TimeBetweenEvictionRuns=30 seconds",
+            "TestOnBorrow=true",
+            "ValidationQuery=SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS",
+            "JdbcInterceptors=StatementCache(prepared=true,callable=false,max=100)"
+        },
         url = "jdbc:hsqldb:mem:seriesdb"
     ),
     @DataSourceDefinition (
@@ -23,7 +35,19 @@ import javax.ejb.Startup;
             user="sa",
             password="",
             databaseName="seriesdb",
-            properties = {"connectionAttributes=;create=true"},
+            initialPoolSize = 2,
+            minPoolSize = 2,
+            properties = {
+                "connectionAttributes=;create=true",
+                "MaxActive=10",
+                "MaxIdle=10",
+                "MaxWaitTime=5000",
+                "MinEvictableIdleTime=5 minutes",
+                "TimeBetweenEvictionRuns=30 seconds",
+                "TestOnBorrow=true",
+                "ValidationQuery=SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS",
+                "JdbcInterceptors=StatementCache(prepared=true,callable=false,max=50)"
+            },
             url = "jdbc:hsqldb:mem:seriesdb"
         )
     })
@@ -1,16 +1,37 @@
 package org.superbiz.jpa.entitymanager;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+
+import org.apache.openjpa.persistence.DataCache;
 
 
 @Entity
+@Cacheable
+@DataCache(timeout = Serie.CACHE_TIMEOUT) // entries older than this are reloaded, even if nothing evicted them
+@NamedQueries({
+    @NamedQuery(name = Serie.FIND_BY_ORIGINAL_CHANNEL, query = "SELECT s FROM Serie s WHERE s.originalChannel = :originalChannel ORDER BY s.title"),
+    @NamedQuery(name = Serie.FIND_BY_TITLE, query = "SELECT s FROM Serie s WHERE s.title = :title"),
+    @NamedQuery(name = Serie.REASSIGN_ORIGINAL_CHANNEL, query = "UPDATE Serie s SET s.originalChannel = :to WHERE s.originalChannel = :from"),
+    @NamedQuery(name = Serie.DELETE_BY_FORMAT, query = "DELETE FROM Serie s WHERE s.format = :format")
+})
 public class Serie {
 
+	static final int CACHE_TIMEOUT = 5 * 60 * 1000;
+
+	public static final String FIND_BY_ORIGINAL_CHANNEL = "Serie.findByOriginalChannel";
+	public static final String FIND_BY_TITLE = "Serie.findByTitle";
+	public static final String REASSIGN_ORIGINAL_CHANNEL = "Serie.reassignOriginalChannel";
+	public static final String DELETE_BY_FORMAT = "Serie.deleteByFormat";
+
 	@Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "SerieIds")
+    // ids are taken from memory, the table is only updated once every allocation-size ids (see META-INF/orm.xml)
     private long id;
 
     private String originalChannel;
@@ -0,0 +1,34 @@
+package org.superbiz.jpa.entitymanager;
+
+import java.io.Serializable;
+
+/**
+ * Read-only projection of a +Serie+, it is not an entity so nothing tracks it.
+ */
+public class SerieSummary implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long id;
+	private final String title;
+	private final String originalChannel;
+
+	public SerieSummary(long id, String title, String originalChannel) {
+		this.id = id;
+		this.title = title;
+		this.originalChannel = originalChannel;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getOriginalChannel() {
+		return originalChannel;
+	}
+
+}
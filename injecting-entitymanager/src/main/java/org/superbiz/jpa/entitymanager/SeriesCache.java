@@ -0,0 +1,72 @@
+package org.superbiz.jpa.entitymanager;
+
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.openjpa.datacache.CacheStatistics;
+import org.apache.openjpa.datacache.QueryKey;
+import org.apache.openjpa.kernel.QueryStatistics;
+import org.apache.openjpa.persistence.JPAFacadeHelper;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactory;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+
+/**
+ * Statistics and eviction of the _OpenJPA_ entity and query caches of the +series+ unit.
+ * 
+ * Writes through an +EntityManager+ keep both caches up to date, eviction is only needed after changes made behind
+ * their back, like bulk statements or other applications.
+ */
+@Stateless
+public class SeriesCache {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	public SeriesCacheStatistics getStatistics() {
+		OpenJPAEntityManagerFactory factory = factory();
+
+		CacheStatistics entities = factory.getStoreCache().getStatistics();
+		QueryStatistics<QueryKey> queries = queryStatistics(factory);
+
+		// entity statistics are kept by class name
+		String serie = Serie.class.getName();
+		return new SeriesCacheStatistics(entities.getReadCount(serie), entities.getHitCount(serie),
+				entities.getWriteCount(serie), queries.getExecutionCount(), queries.getHitCount(),
+				queries.getEvictionCount());
+	}
+
+	public void evict(long id) {
+		entityManager.getEntityManagerFactory().getCache().evict(Serie.class, id);
+	}
+
+	/**
+	 * Evicts every +Serie+ and every cached query over them.
+	 */
+	public void evictAll() {
+		evictAll(factory());
+	}
+
+	static void evictAll(OpenJPAEntityManagerFactory factory) {
+		factory.getCache().evict(Serie.class);
+		factory.getQueryResultCache().evictAll(Serie.class);
+	}
+
+	public void resetStatistics() {
+		OpenJPAEntityManagerFactory factory = factory();
+		factory.getStoreCache().getStatistics().reset();
+		queryStatistics(factory).reset();
+	}
+
+	// the query cache of the unit, not the QueryResultCache facade which only offers eviction
+	private static QueryStatistics<QueryKey> queryStatistics(OpenJPAEntityManagerFactory factory) {
+		return JPAFacadeHelper.toBrokerFactory(factory).getConfiguration().getDataCacheManagerInstance()
+				.getSystemQueryCache().getStatistics();
+	}
+
+	// the container wraps the factory, the one of the underlying OpenJPA entity manager has the OpenJPA API
+	private OpenJPAEntityManagerFactory factory() {
+		return OpenJPAPersistence.cast(entityManager).getEntityManagerFactory();
+	}
+
+}
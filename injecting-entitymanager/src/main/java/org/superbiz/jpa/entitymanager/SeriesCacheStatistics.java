@@ -0,0 +1,71 @@
+package org.superbiz.jpa.entitymanager;
+
+import java.io.Serializable;
+
+public class SeriesCacheStatistics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long entityReads;
+	private final long entityHits;
+	private final long entityWrites;
+	private final long queryExecutions;
+	private final long queryHits;
+	private final long queryEvictions;
+
+	public SeriesCacheStatistics(long entityReads, long entityHits, long entityWrites, long queryExecutions,
+			long queryHits, long queryEvictions) {
+		this.entityReads = entityReads;
+		this.entityHits = entityHits;
+		this.entityWrites = entityWrites;
+		this.queryExecutions = queryExecutions;
+		this.queryHits = queryHits;
+		this.queryEvictions = queryEvictions;
+	}
+
+	/**
+	 * Lookups of +Serie+ instances in the entity cache.
+	 */
+	public long getEntityReads() {
+		return entityReads;
+	}
+
+	public long getEntityHits() {
+		return entityHits;
+	}
+
+	public long getEntityWrites() {
+		return entityWrites;
+	}
+
+	public double getEntityHitRatio() {
+		return entityReads == 0 ? 0 : (double) entityHits / entityReads;
+	}
+
+	/**
+	 * Executions of cacheable queries, whether answered from the query cache or not.
+	 */
+	public long getQueryExecutions() {
+		return queryExecutions;
+	}
+
+	public long getQueryHits() {
+		return queryHits;
+	}
+
+	public long getQueryEvictions() {
+		return queryEvictions;
+	}
+
+	public double getQueryHitRatio() {
+		return queryExecutions == 0 ? 0 : (double) queryHits / queryExecutions;
+	}
+
+	@Override
+	public String toString() {
+		return "SeriesCacheStatistics [entityReads=" + entityReads + ", entityHits=" + entityHits + ", entityWrites="
+				+ entityWrites + ", queryExecutions=" + queryExecutions + ", queryHits=" + queryHits
+				+ ", queryEvictions=" + queryEvictions + "]";
+	}
+
+}
@@ -0,0 +1,272 @@
+package org.superbiz.jpa.entitymanager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Record formats of +SeriesTransfer+, every record holds the +originalChannel+, +title+ and +format+ of a serie.
+ */
+public enum SeriesFormat {
+
+	/**
+	 * RFC 4180 comma separated values with a header line. +null+ is written as an empty field and an empty string as
+	 * +""+, so only an unquoted empty field reads back as +null+. Empty lines hold no record and are skipped.
+	 */
+	CSV {
+		@Override
+		void writeHeader(Writer writer) throws IOException {
+			writer.write("originalChannel,title,format\r\n");
+		}
+
+		@Override
+		void write(Writer writer, String[] fields) throws IOException {
+			for (int i = 0; i < fields.length; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				String field = fields[i];
+				if (field == null) {
+					continue;
+				}
+				if (!field.isEmpty() && field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+					writer.write(field);
+				} else {
+					writer.write('"');
+					writer.write(field.replace("\"", "\"\""));
+					writer.write('"');
+				}
+			}
+			writer.write("\r\n");
+		}
+
+		@Override
+		void skipHeader(Reader reader) throws IOException {
+			read(reader, new StringBuilder(), 0);
+		}
+
+		@Override
+		String[] read(Reader reader, StringBuilder field, int fieldCount) throws IOException {
+			String[] fields = new String[Math.max(fieldCount, 1)];
+			int index = 0;
+			boolean quoted = false;
+			boolean wasQuoted = false;
+			field.setLength(0);
+
+			int c = reader.read();
+			while (c == '\r' || c == '\n') {
+				c = reader.read();
+			}
+			if (c < 0) {
+				return null;
+			}
+			while (true) {
+				if (quoted) {
+					if (c < 0) {
+						throw new IOException("Quoted field not closed");
+					}
+					if (c == '"') {
+						reader.mark(1);
+						int next = reader.read();
+						if (next == '"') {
+							field.append('"');
+						} else {
+							quoted = false;
+							reader.reset();
+						}
+					} else {
+						field.append((char) c);
+					}
+				} else if (c == '"' && field.length() == 0) {
+					quoted = true;
+					wasQuoted = true;
+				} else if (c == ',' || c == '\n' || c < 0) {
+					if (index < fields.length) {
+						fields[index] = field.length() == 0 && !wasQuoted ? null : field.toString();
+					}
+					index++;
+					field.setLength(0);
+					wasQuoted = false;
+					if (c != ',') {
+						return fields;
+					}
+				} else if (c != '\r') {
+					field.append((char) c);
+				}
+				c = reader.read();
+			}
+		}
+	},
+
+	/**
+	 * One flat _JSON_ object per line.
+	 */
+	JSON_LINES {
+		private final String[] names = { "originalChannel", "title", "format" };
+
+		@Override
+		void write(Writer writer, String[] fields) throws IOException {
+			writer.write('{');
+			for (int i = 0; i < fields.length; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writer.write('"');
+				writer.write(names[i]);
+				writer.write("\":");
+				writeString(writer, fields[i]);
+			}
+			writer.write("}\n");
+		}
+
+		private void writeString(Writer writer, String value) throws IOException {
+			if (value == null) {
+				writer.write("null");
+				return;
+			}
+			writer.write('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '"':
+					writer.write("\\\"");
+					break;
+				case '\\':
+					writer.write("\\\\");
+					break;
+				case '\n':
+					writer.write("\\n");
+					break;
+				case '\r':
+					writer.write("\\r");
+					break;
+				case '\t':
+					writer.write("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						writer.write(String.format("\\u%04x", (int) c));
+					} else {
+						writer.write(c);
+					}
+				}
+			}
+			writer.write('"');
+		}
+
+		@Override
+		String[] read(Reader reader, StringBuilder field, int fieldCount) throws IOException {
+			int c = skipWhitespace(reader);
+			if (c < 0) {
+				return null;
+			}
+			if (c != '{') {
+				throw new IOException("Expected '{' but found '" + (char) c + "'");
+			}
+
+			String[] fields = new String[names.length];
+			c = skipWhitespace(reader);
+			while (c != '}') {
+				if (c != '"') {
+					throw new IOException("Expected a field name");
+				}
+				String name = readString(reader, field);
+				if (skipWhitespace(reader) != ':') {
+					throw new IOException("Expected ':' after " + name);
+				}
+				c = skipWhitespace(reader);
+				String value;
+				if (c == '"') {
+					value = readString(reader, field);
+				} else if (c == 'n' && reader.read() == 'u' && reader.read() == 'l' && reader.read() == 'l') {
+					value = null;
+				} else {
+					throw new IOException("Only string and null values are supported");
+				}
+				for (int i = 0; i < names.length; i++) {
+					if (names[i].equals(name)) {
+						fields[i] = value;
+					}
+				}
+				c = skipWhitespace(reader);
+				if (c == ',') {
+					c = skipWhitespace(reader);
+				} else if (c != '}') {
+					throw new IOException("Expected ',' or '}'");
+				}
+			}
+			return fields;
+		}
+
+		private int skipWhitespace(Reader reader) throws IOException {
+			int c;
+			do {
+				c = reader.read();
+			} while (c == ' ' || c == '\t' || c == '\r' || c == '\n');
+			return c;
+		}
+
+		private String readString(Reader reader, StringBuilder value) throws IOException {
+			value.setLength(0);
+			for (int c = reader.read(); c != '"'; c = reader.read()) {
+				if (c < 0) {
+					throw new IOException("String not closed");
+				}
+				if (c == '\\') {
+					c = reader.read();
+					switch (c) {
+					case -1:
+						throw new IOException("String not closed");
+					case 'n':
+						value.append('\n');
+						break;
+					case 'r':
+						value.append('\r');
+						break;
+					case 't':
+						value.append('\t');
+						break;
+					case 'b':
+						value.append('\b');
+						break;
+					case 'f':
+						value.append('\f');
+						break;
+					case 'u':
+						int code = 0;
+						for (int i = 0; i < 4; i++) {
+							int digit = Character.digit(reader.read(), 16);
+							if (digit < 0) {
+								throw new IOException("Invalid \\u escape, four hexadecimal digits expected");
+							}
+							code = code * 16 + digit;
+						}
+						value.append((char) code);
+						break;
+					default:
+						value.append((char) c); // quote, backslash and slash
+					}
+				} else {
+					value.append((char) c);
+				}
+			}
+			return value.toString();
+		}
+	};
+
+	void writeHeader(Writer writer) throws IOException {
+	}
+
+	abstract void write(Writer writer, String[] fields) throws IOException;
+
+	void skipHeader(Reader reader) throws IOException {
+	}
+
+	/**
+	 * Next record, or +null+ at the end of the input.
+	 * 
+	 * @param field reusable buffer
+	 */
+	abstract String[] read(Reader reader, StringBuilder field, int fieldCount) throws IOException;
+
+}
@@ -0,0 +1,96 @@
+package org.superbiz.jpa.entitymanager;
+
+import java.util.List;
+
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactory;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+
+/**
+ * Operations shared by the series beans, whatever the way they got their +EntityManager+.
+ */
+final class SeriesOperations {
+
+	private static final String CACHE_STORE_MODE = "javax.persistence.cache.storeMode";
+
+	private SeriesOperations() {
+	}
+
+	/**
+	 * Persists +series+ in the current transaction. Every +batchSize+ entities the pending inserts are flushed and the
+	 * persistence context is cleared, so it never holds more than +batchSize+ entities. The entity cache is bypassed,
+	 * cleared entities can not be put in it at commit and bulk loads would only push the read ones out. The previous
+	 * store mode is restored afterwards.
+	 */
+	static int persist(EntityManager entityManager, Iterable<Serie> series, int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("seriesBatchSize must be positive, not " + batchSize);
+		}
+
+		Object storeMode = entityManager.getProperties().get(CACHE_STORE_MODE);
+		entityManager.setProperty(CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+		try {
+			int count = 0;
+			for (Serie serie : series) {
+				entityManager.persist(serie);
+				if (++count % batchSize == 0) {
+					entityManager.flush();
+					entityManager.clear();
+				}
+			}
+			entityManager.flush();
+			entityManager.clear();
+			return count;
+		} finally {
+			entityManager.setProperty(CACHE_STORE_MODE, storeMode == null ? CacheStoreMode.USE : storeMode);
+		}
+	}
+
+	static List<Serie> findByOriginalChannel(EntityManager entityManager, String originalChannel) {
+		return entityManager.createNamedQuery(Serie.FIND_BY_ORIGINAL_CHANNEL, Serie.class)
+				.setParameter("originalChannel", originalChannel)
+				.getResultList();
+	}
+
+	static Serie findByTitle(EntityManager entityManager, String title) {
+		List<Serie> series = entityManager.createNamedQuery(Serie.FIND_BY_TITLE, Serie.class)
+				.setParameter("title", title)
+				.setMaxResults(1)
+				.getResultList();
+		return series.isEmpty() ? null : series.get(0);
+	}
+
+	/**
+	 * Runs a bulk JPQL statement as a single SQL statement. The statement bypasses the persistence context and the caches,
+	 * so pending changes are flushed first, the context is cleared afterwards and the +Serie+ caches are evicted once
+	 * the transaction is over, when no other transaction can load the old rows back into them.
+	 * 
+	 * Clearing detaches every entity managed in the transaction, not only the +Serie+ rows the statement touched. Callers
+	 * must use the entities returned by later finders, changes to ones loaded before are no longer tracked.
+	 */
+	static int executeBulk(EntityManager entityManager, TransactionSynchronizationRegistry transactions, Query bulk) {
+		entityManager.flush();
+		int updated = bulk.executeUpdate();
+		entityManager.clear();
+
+		final OpenJPAEntityManagerFactory factory = OpenJPAPersistence.cast(entityManager).getEntityManagerFactory();
+		SeriesCache.evictAll(factory);
+		transactions.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				SeriesCache.evictAll(factory);
+			}
+		});
+		return updated;
+	}
+
+}
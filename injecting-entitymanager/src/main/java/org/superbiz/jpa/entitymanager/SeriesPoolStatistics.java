@@ -0,0 +1,75 @@
+package org.superbiz.jpa.entitymanager;
+
+import java.io.Serializable;
+
+public class SeriesPoolStatistics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String dataSource;
+	private final int size;
+	private final int active;
+	private final int idle;
+	private final int waiters;
+	private final int maxActive;
+	private final int maxWait;
+
+	public SeriesPoolStatistics(String dataSource, int size, int active, int idle, int waiters, int maxActive,
+			int maxWait) {
+		this.dataSource = dataSource;
+		this.size = size;
+		this.active = active;
+		this.idle = idle;
+		this.waiters = waiters;
+		this.maxActive = maxActive;
+		this.maxWait = maxWait;
+	}
+
+	public String getDataSource() {
+		return dataSource;
+	}
+
+	/**
+	 * Physical connections open, borrowed or not.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public int getActive() {
+		return active;
+	}
+
+	public int getIdle() {
+		return idle;
+	}
+
+	/**
+	 * Threads blocked waiting for a connection, anything but 0 for long means +maxActive+ is too low.
+	 */
+	public int getWaiters() {
+		return waiters;
+	}
+
+	public int getMaxActive() {
+		return maxActive;
+	}
+
+	/**
+	 * Configured +MaxWaitTime+ in milliseconds, how long a borrower may wait for a connection rather than a measured wait.
+	 */
+	public int getMaxWait() {
+		return maxWait;
+	}
+
+	public double getUsage() {
+		return maxActive == 0 ? 0 : (double) active / maxActive;
+	}
+
+	@Override
+	public String toString() {
+		return "SeriesPoolStatistics [dataSource=" + dataSource + ", size=" + size + ", active=" + active + ", idle="
+				+ idle + ", waiters=" + waiters + ", maxActive=" + maxActive + ", maxWait=" + maxWait + "]";
+	}
+
+}
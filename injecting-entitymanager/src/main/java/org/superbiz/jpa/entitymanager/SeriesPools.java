@@ -0,0 +1,57 @@
+package org.superbiz.jpa.entitymanager;
+
+import java.lang.reflect.InvocationTargetException;
+
+import javax.annotation.Resource;
+import javax.ejb.EJBException;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.sql.DataSource;
+
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+
+/**
+ * Live metrics of the _Tomcat JDBC_ pools behind the +series+ and +seriesUnmanaged+ datasources, to size them from
+ * what they actually do.
+ * 
+ * The counters are read from the pools, no connection is borrowed to take them.
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class SeriesPools {
+
+	@Resource(name = "series")
+	private DataSource series;
+
+	@Resource(name = "seriesUnmanaged")
+	private DataSource seriesUnmanaged;
+
+	public SeriesPoolStatistics getSeriesStatistics() {
+		return statistics("series", series);
+	}
+
+	public SeriesPoolStatistics getSeriesUnmanagedStatistics() {
+		return statistics("seriesUnmanaged", seriesUnmanaged);
+	}
+
+	private SeriesPoolStatistics statistics(String name, DataSource dataSource) {
+		ConnectionPool pool = pool(dataSource);
+		return new SeriesPoolStatistics(name, pool.getSize(), pool.getActive(), pool.getIdle(), pool.getWaitCount(),
+				pool.getPoolProperties().getMaxActive(), pool.getPoolProperties().getMaxWait());
+	}
+
+	// transactional datasources are wrapped by the container, which exposes the pool through +getDelegate()+ only
+	private static ConnectionPool pool(DataSource dataSource) {
+		Object delegate = dataSource;
+		try {
+			while (!(delegate instanceof org.apache.tomcat.jdbc.pool.DataSource)) {
+				delegate = delegate.getClass().getMethod("getDelegate").invoke(delegate);
+			}
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			throw new EJBException("Not a Tomcat JDBC pool: " + dataSource, e);
+		}
+		return ((org.apache.tomcat.jdbc.pool.DataSource) delegate).getPool();
+	}
+
+}
@@ -0,0 +1,70 @@
+package org.superbiz.jpa.entitymanager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.ejb.EJBException;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.sql.DataSource;
+
+/**
+ * Read-only queries on the non transactional +seriesUnmanaged+ datasource.
+ * 
+ * There is no transaction to enlist the connection in and no persistence context to track the results, rows are
+ * read with plain _JDBC_ straight into +SerieSummary+ instances. Results may miss changes not committed yet.
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class SeriesReader {
+
+	private static final String SELECT_SUMMARY = "SELECT ID, TITLE, ORIGINALCHANNEL FROM SERIE";
+
+	@Resource(name = "seriesUnmanaged")
+	private DataSource dataSource;
+
+	public SerieSummary findSummary(long id) {
+		List<SerieSummary> summaries = query(SELECT_SUMMARY + " WHERE ID = ?", id);
+		return summaries.isEmpty() ? null : summaries.get(0);
+	}
+
+	public List<SerieSummary> findSummariesByOriginalChannel(String originalChannel) {
+		return query(SELECT_SUMMARY + " WHERE ORIGINALCHANNEL = ? ORDER BY TITLE", originalChannel);
+	}
+
+	public long countByFormat(String format) {
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM SERIE WHERE FORMAT = ?")) {
+			statement.setString(1, format);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				resultSet.next();
+				return resultSet.getLong(1);
+			}
+		} catch (SQLException e) {
+			throw new EJBException(e);
+		}
+	}
+
+	private List<SerieSummary> query(String sql, Object parameter) {
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setObject(1, parameter);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				List<SerieSummary> summaries = new ArrayList<>();
+				while (resultSet.next()) {
+					summaries.add(new SerieSummary(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)));
+				}
+				return summaries;
+			}
+		} catch (SQLException e) {
+			throw new EJBException(e);
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+package org.superbiz.jpa.entitymanager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.sql.DataSource;
+
+import org.apache.openjpa.persistence.Generator;
+import org.apache.openjpa.persistence.OpenJPAEntityManager;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+
+/**
+ * Streams the series catalogue out to and in from a channel, in +SeriesFormat+ records.
+ * 
+ * Both directions work on the +seriesUnmanaged+ datasource with plain _JDBC_ and hold a single record in memory, so
+ * they use the same memory whatever the size of the table.
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class SeriesTransfer {
+
+	private static final int FIELDS = 3;
+
+	@Resource(name = "seriesUnmanaged")
+	private DataSource dataSource;
+
+	@Resource(name = "seriesTransferFetchSize")
+	private Integer fetchSize = 500;
+
+	@Resource(name = "seriesTransferBatchSize")
+	private Integer batchSize = 500;
+
+	@PersistenceUnit
+	private EntityManagerFactory entityManagerFactory;
+
+	@EJB
+	private SeriesCache seriesCache;
+
+	/**
+	 * Writes every serie to +channel+, rows are read through a forward only cursor fetching +seriesTransferFetchSize+
+	 * rows at a time. The channel is not closed.
+	 * 
+	 * @return the number of series written
+	 */
+	public long exportSeries(WritableByteChannel channel, SeriesFormat format) throws IOException {
+		Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 8192);
+		format.writeHeader(writer);
+
+		long count = 0;
+		try (Connection connection = dataSource.getConnection()) {
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false); // some drivers, like PostgreSQL, ignore the fetch size in auto-commit mode
+			try (PreparedStatement statement = connection.prepareStatement(
+					"SELECT ORIGINALCHANNEL, TITLE, FORMAT FROM SERIE ORDER BY ID",
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+				statement.setFetchSize(fetchSize);
+				try (ResultSet resultSet = statement.executeQuery()) {
+					String[] fields = new String[FIELDS];
+					while (resultSet.next()) {
+						for (int i = 0; i < FIELDS; i++) {
+							fields[i] = resultSet.getString(i + 1);
+						}
+						format.write(writer, fields);
+						count++;
+					}
+				}
+			} finally {
+				connection.setAutoCommit(autoCommit);
+			}
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+
+		writer.flush();
+		return count;
+	}
+
+	/**
+	 * Inserts the series read from +channel+ as new rows, committing every +seriesTransferBatchSize+ rows. Ids come
+	 * from the _OpenJPA_ generator of +Serie+, so they never clash with those of persisted entities. Batches committed
+	 * before a failure stay imported.
+	 * 
+	 * @return the number of series imported
+	 */
+	public long importSeries(ReadableByteChannel channel, SeriesFormat format) throws IOException {
+		Reader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), 8192));
+		format.skipHeader(reader);
+
+		long count = 0;
+		OpenJPAEntityManager entityManager = OpenJPAPersistence.cast(entityManagerFactory.createEntityManager());
+		try (Connection connection = dataSource.getConnection()) {
+			Generator ids = entityManager.getFieldGenerator(Serie.class, "id");
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try (PreparedStatement insert = connection.prepareStatement(
+					"INSERT INTO SERIE (ID, ORIGINALCHANNEL, TITLE, FORMAT) VALUES (?, ?, ?, ?)")) {
+				StringBuilder buffer = new StringBuilder();
+				int batched = 0;
+				for (String[] fields = format.read(reader, buffer, FIELDS); fields != null; fields = format.read(reader, buffer, FIELDS)) {
+					insert.setLong(1, ((Number) ids.next()).longValue());
+					for (int i = 0; i < FIELDS; i++) {
+						insert.setString(i + 2, fields[i]);
+					}
+					insert.addBatch();
+					count++;
+
+					if (++batched == batchSize) {
+						insert.executeBatch();
+						connection.commit();
+						batched = 0;
+					}
+				}
+				if (batched > 0) {
+					insert.executeBatch();
+					connection.commit();
+				}
+			} catch (SQLException | IOException | RuntimeException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(autoCommit);
+				seriesCache.evictAll(); // cached queries over Serie do not know about the new rows
+			}
+		} catch (SQLException e) {
+			throw new IOException(e);
+		} finally {
+			entityManager.close();
+		}
+		return count;
+	}
+
+}
@@ -1,8 +1,12 @@
 package org.superbiz.jpa.entitymanager;
 
+import java.util.List;
+
+import javax.annotation.Resource;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 
 @Stateless
@@ -11,9 +15,50 @@ public class SeriesWithInjection {
 	@Inject              // <1> +@PersistenceContext+ is not required anymore. +@Inject+ can be used without any problem.
 	@SeriesEntityManager // <2> We add some semantic meaning to the injection and also helps to distinguish in case of different _persistence units_.
 	private EntityManager entityManager;
+
+	@Resource(name = "seriesBatchSize")
+	private Integer batchSize = 100;
+
+	@Resource
+	private TransactionSynchronizationRegistry transactions;
 	
 	public void createSerie(Serie serie) {
 		this.entityManager.persist(serie);
 	}
+
+	public Serie updateSerie(Serie serie) {
+		return this.entityManager.merge(serie);
+	}
+
+	/**
+	 * Persists +series+ in a single transaction, flushing and clearing the persistence context every +seriesBatchSize+ entities.
+	 */
+	public int createSeries(Iterable<Serie> series) {
+		return SeriesOperations.persist(this.entityManager, series, batchSize);
+	}
+
+	// finders are answered from the shared entity and query caches when they can
+	public Serie findSerie(long id) {
+		return this.entityManager.find(Serie.class, id);
+	}
+
+	public List<Serie> findByOriginalChannel(String originalChannel) {
+		return SeriesOperations.findByOriginalChannel(this.entityManager, originalChannel);
+	}
+
+	public Serie findByTitle(String title) {
+		return SeriesOperations.findByTitle(this.entityManager, title);
+	}
+
+	// bulk operations change every matching row with one statement, without loading them, and detach every managed entity
+	public int reassignOriginalChannel(String from, String to) {
+		return SeriesOperations.executeBulk(this.entityManager, this.transactions,
+				this.entityManager.createNamedQuery(Serie.REASSIGN_ORIGINAL_CHANNEL).setParameter("from", from).setParameter("to", to));
+	}
+
+	public int deleteByFormat(String format) {
+		return SeriesOperations.executeBulk(this.entityManager, this.transactions,
+				this.entityManager.createNamedQuery(Serie.DELETE_BY_FORMAT).setParameter("format", format));
+	}
 	
 }
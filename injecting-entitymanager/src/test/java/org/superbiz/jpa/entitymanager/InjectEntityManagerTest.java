@@ -3,6 +3,22 @@ package org.superbiz.jpa.entitymanager;
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.ejb.EJB;
 
@@ -21,6 +37,7 @@ import org.superbiz.jpa.entitymanager.EntityManagerProducer;
 import org.superbiz.jpa.entitymanager.Serie;
 import org.superbiz.jpa.entitymanager.SeriesEntityManager;
 import org.superbiz.jpa.entitymanager.SeriesWithInjection;
+import org.superbiz.jpa.entitymanager.SeriesWithPersistenceContext;
 
 /**
  * = Injecting EntityManager
@@ -74,6 +91,32 @@ import org.superbiz.jpa.entitymanager.SeriesWithInjection;
  * 
  * Moreover adding a new _entity manager_ will not conflict the state of current application because _entity manager_ is qualified, so you know exactly every time which one is used.
  *
+ * To load many series at once, both beans offer +createSeries+. It flushes and clears the persistence context every +seriesBatchSize+ entities,
+ * so memory use stays flat. The +openjpa.jdbc.DBDictionary+ property +batchLimit=100+ lets _OpenJPA_ send the inserts of a flush as _JDBC_ batches.
+ *
+ * Ids come from a +@TableGenerator+. _OpenJPA_ reserves +allocationSize+ ids at a time in the +SERIE_IDS+ table and hands them out from memory,
+ * so a new id rarely needs a trip to the database. The generator is declared in +META-INF/orm.xml+, so its allocation size can be changed without recompiling.
+ *
+ * include::src/main/resources/META-INF/orm.xml[]
+ *
+ * +Serie+ is +@Cacheable+, and the unit turns on the _OpenJPA_ entity cache and query cache with size bounds and an eviction schedule.
+ * Entries expire after the +@DataCache+ timeout. +findSerie+, +findByOriginalChannel+ and +findByTitle+ are answered from the caches.
+ * Writes through the beans keep the caches current, and +SeriesCache+ publishes their hit ratios.
+ *
+ * Read-only screens do not need entities at all. +SeriesReader+ runs without a transaction on the non transactional +seriesUnmanaged+ datasource,
+ * and reads rows with plain _JDBC_ into +SerieSummary+ projections.
+ *
+ * +SeriesTransfer+ uses the same datasource to stream the whole catalogue to a channel, as CSV or JSON lines, through a forward only cursor.
+ * It also imports such a stream back with batched inserts. Imported rows take their ids from the +Serie+ id generator table.
+ *
+ * To change many series at once, +reassignOriginalChannel+ and +deleteByFormat+ run one _JPQL_ bulk statement instead of loading every entity.
+ * Bulk statements bypass the caches, so the +Serie+ caches are evicted when the transaction ends.
+ *
+ * Both datasources size their pools, validate connections on borrow and cache prepared statements per connection.
+ * _TomEE_ maps +initialPoolSize+ and +minPoolSize+ but not the other standard attributes, so every other limit is set once, as a pool +property+.
+ * Every value can be overridden per datasource in +resources.xml+ or +tomee.xml+ without recompiling.
+ * +SeriesPools+ reports the size, active and idle connections and waiting threads of each pool, without borrowing a connection.
+ *
  */
 @RunWith(Arquillian.class)
 public class InjectEntityManagerTest {
@@ -84,9 +127,20 @@ public class InjectEntityManagerTest {
 				.addClass(DataSourceDefinitions.class)
 				.addClass(Serie.class)
 				.addClass(SeriesWithInjection.class)
+				.addClass(SeriesWithPersistenceContext.class)
+				.addClass(SeriesOperations.class)
+				.addClass(SeriesCache.class)
+				.addClass(SeriesCacheStatistics.class)
+				.addClass(SeriesReader.class)
+				.addClass(SerieSummary.class)
+				.addClass(SeriesTransfer.class)
+				.addClass(SeriesFormat.class)
+				.addClass(SeriesPools.class)
+				.addClass(SeriesPoolStatistics.class)
 				.addClass(SeriesEntityManager.class)
 				.addClass(EntityManagerProducer.class)
 				.addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml")
+				.addAsManifestResource("META-INF/orm.xml", "orm.xml")
 				.addAsManifestResource(new StringAsset(descriptor().exportAsString()), "persistence.xml");
 		return javaArchive;
 	}
@@ -100,7 +154,24 @@ public class InjectEntityManagerTest {
 	                            .name("openjpa.jdbc.SynchronizeMappings")
 	                            .value("buildSchema(ForeignKeys=true)")
 	                        .up()
+	                        .createProperty()
+	                            .name("openjpa.jdbc.DBDictionary")
+	                            .value("batchLimit=100")
+	                        .up()
+	                        .createProperty()
+	                            .name("openjpa.DataCache")
+	                            .value("true(CacheSize=10000, SoftReferenceSize=0, EvictionSchedule='+60', EnableStatistics=true)")
+	                        .up()
+	                        .createProperty()
+	                            .name("openjpa.QueryCache")
+	                            .value("true(CacheSize=1000, SoftReferenceSize=0, EnableStatistics=true)")
+	                        .up()
+	                        .createProperty()
+	                            .name("openjpa.RemoteCommitProvider")
+	                            .value("sjvm")
+	                        .up()
 	                     .up()
+	                .sharedCacheMode("ENABLE_SELECTIVE")
 	                .jtaDataSource("series")
 	                .clazz("org.superbiz.jpa.entitymanager.Serie")
 	                .up();
@@ -109,6 +180,21 @@ public class InjectEntityManagerTest {
 	@EJB
 	SeriesWithInjection seriesWithInjection;
 	
+	@EJB
+	SeriesWithPersistenceContext seriesWithPersistenceContext;
+	
+	@EJB
+	SeriesCache seriesCache;
+	
+	@EJB
+	SeriesReader seriesReader;
+	
+	@EJB
+	SeriesTransfer seriesTransfer;
+	
+	@EJB
+	SeriesPools seriesPools;
+	
 	@Test
 	public void shouldInsertSerieInsideDatabase() {
 		
@@ -119,4 +205,193 @@ public class InjectEntityManagerTest {
 		
 	}
 	
-}
+	@Test
+	public void shouldInsertSeriesInBatches() {
+		
+		List<Serie> series = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			series.add(new Serie("Channel " + i % 3, "Serie " + i, "Sitcom"));
+		}
+		
+		assertThat(seriesWithInjection.createSeries(series.subList(0, 125)), is(125));
+		assertThat(seriesWithPersistenceContext.createSeries(series.subList(125, 250)), is(125));
+		
+		Set<Long> ids = new HashSet<>();
+		for (Serie serie : series) {
+			ids.add(serie.getId());
+		}
+		assertThat(ids.size(), is(250));
+		
+	}
+	
+	@Test
+	public void shouldInsertSeriesInBatchesAroundTheEntityCache() {
+		
+		// a batch larger than seriesBatchSize clears the persistence context before commit, which used to fail in the entity cache
+		List<Serie> series = new ArrayList<>();
+		for (int i = 0; i < 150; i++) {
+			series.add(new Serie("Syfy", "Space serie " + i, "Science fiction"));
+		}
+		seriesCache.resetStatistics();
+		
+		assertThat(seriesWithInjection.createSeries(series), is(150));
+		assertThat(seriesCache.getStatistics().getEntityWrites(), is(0L)); // bulk loads bypass the cache
+		
+		Serie first = series.get(0);
+		assertThat(seriesWithInjection.findSerie(first.getId()).getTitle(), is("Space serie 0"));
+		assertThat(seriesWithInjection.findSerie(first.getId()).getTitle(), is("Space serie 0"));
+		assertThat(seriesCache.getStatistics().getEntityHits(), is(1L)); // the first find cached it
+		
+	}
+	
+	@Test
+	public void shouldGenerateUniqueIdsConcurrently() throws Exception {
+		
+		// the first persist registers the unenhanced Serie class with OpenJPA, that must not race
+		seriesWithInjection.createSerie(new Serie("HBO", "Warm up", "Drama"));
+		
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<Long>> ids = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			final Serie serie = new Serie("HBO", "Serie " + i, "Drama");
+			ids.add(executor.submit(new Callable<Long>() {
+				@Override
+				public Long call() {
+					seriesWithInjection.createSerie(serie);
+					return serie.getId();
+				}
+			}));
+		}
+		
+		Set<Long> unique = new HashSet<>();
+		for (Future<Long> id : ids) {
+			unique.add(id.get());
+		}
+		executor.shutdown();
+		
+		assertThat(unique.size(), is(200));
+		
+	}
+	
+	@Test
+	public void shouldAnswerFindersFromTheCaches() {
+		
+		Serie theWire = new Serie("HBO", "The Wire", "Crime drama");
+		seriesWithInjection.createSerie(theWire);
+		seriesCache.resetStatistics();
+		
+		assertThat(seriesWithPersistenceContext.findSerie(theWire.getId()).getTitle(), is("The Wire"));
+		assertThat(seriesWithInjection.findSerie(theWire.getId()).getTitle(), is("The Wire"));
+		assertThat(seriesCache.getStatistics().getEntityHits(), is(2L)); // the commit of createSerie filled the cache
+		
+		seriesWithInjection.findByTitle("The Wire");
+		seriesWithInjection.findByTitle("The Wire");
+		assertThat(seriesCache.getStatistics().getQueryHits(), is(1L));
+		
+		theWire.setFormat("Drama");
+		seriesWithInjection.updateSerie(theWire); // writes invalidate the cached queries over Serie
+		assertThat(seriesWithInjection.findByTitle("The Wire").getFormat(), is("Drama"));
+		
+	}
+	
+	@Test
+	public void shouldReadProjectionsWithoutTransaction() {
+		
+		Serie fargo = new Serie("FX", "Fargo", "Anthology");
+		seriesWithInjection.createSerie(fargo);
+		
+		SerieSummary summary = seriesReader.findSummary(fargo.getId());
+		assertThat(summary.getTitle(), is("Fargo"));
+		assertThat(summary.getOriginalChannel(), is("FX"));
+		assertThat(seriesReader.findSummariesByOriginalChannel("FX").size(), is(1));
+		assertThat(seriesReader.countByFormat("Anthology"), is(1L));
+		
+	}
+	
+	@Test
+	public void shouldExportAndImportSeries() throws Exception {
+		
+		seriesWithInjection.createSerie(new Serie("AMC", "Mad Men, \"the\" series", "Period\ndrama"));
+		seriesWithInjection.createSerie(new Serie("AMC", "Breaking Bad", null));
+		seriesWithInjection.createSerie(new Serie(null, null, null));
+		seriesWithInjection.createSerie(new Serie("AMC", "", "Pilot")); // an empty title is not a missing one
+		long before = seriesReader.countByFormat("Period\ndrama");
+		long emptyTitles = countEmptyTitles("AMC");
+		
+		for (SeriesFormat format : SeriesFormat.values()) {
+			ByteArrayOutputStream exported = new ByteArrayOutputStream();
+			long count = seriesTransfer.exportSeries(Channels.newChannel(exported), format);
+			
+			long imported = seriesTransfer.importSeries(Channels.newChannel(new ByteArrayInputStream(exported.toByteArray())), format);
+			assertThat(imported, is(count));
+			
+			// imported rows come after the exported ones, with the same values
+			ByteArrayOutputStream exportedAgain = new ByteArrayOutputStream();
+			seriesTransfer.exportSeries(Channels.newChannel(exportedAgain), format);
+			StringWriter header = new StringWriter();
+			format.writeHeader(header);
+			String records = exported.toString("UTF-8").substring(header.toString().length());
+			assertThat(exportedAgain.toString("UTF-8"), is(header + records + records));
+		}
+		assertThat(seriesReader.countByFormat("Period\ndrama"), is(before * 4)); // each import doubled the table
+		assertThat(countEmptyTitles("AMC"), is(emptyTitles * 4));
+		
+		Serie theSopranos = new Serie("HBO", "The Sopranos", "Crime drama");
+		seriesWithInjection.createSerie(theSopranos); // the generator does not hand out imported ids
+		assertThat(seriesReader.findSummary(theSopranos.getId()).getTitle(), is("The Sopranos"));
+		
+	}
+	
+	private long countEmptyTitles(String originalChannel) {
+		long count = 0;
+		for (SerieSummary summary : seriesReader.findSummariesByOriginalChannel(originalChannel)) {
+			if ("".equals(summary.getTitle())) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	@Test(expected = IOException.class)
+	public void shouldRejectInvalidUnicodeEscapes() throws Exception {
+		
+		SeriesFormat.JSON_LINES.read(new StringReader("{\"title\":\"\\u00g9\"}\n"), new StringBuilder(), 3);
+		
+	}
+	
+	@Test
+	public void shouldUpdateAndDeleteInBulk() {
+		
+		List<Serie> series = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			series.add(new Serie("UPN", "Miniserie " + i, "Miniseries"));
+		}
+		seriesWithInjection.createSeries(series);
+		Serie first = series.get(0);
+		assertThat(seriesWithInjection.findByOriginalChannel("UPN").size(), is(10)); // now in the caches
+		assertThat(seriesWithInjection.findSerie(first.getId()).getOriginalChannel(), is("UPN"));
+		
+		assertThat(seriesWithPersistenceContext.reassignOriginalChannel("UPN", "CBS"), is(10));
+		assertThat(seriesWithInjection.findByOriginalChannel("UPN").size(), is(0));
+		assertThat(seriesWithInjection.findSerie(first.getId()).getOriginalChannel(), is("CBS"));
+		
+		assertThat(seriesWithInjection.deleteByFormat("Miniseries"), is(10));
+		assertThat(seriesWithInjection.findSerie(first.getId()), is(nullValue()));
+		
+	}
+	
+	@Test
+	public void shouldReportPoolMetrics() {
+		
+		for (SeriesPoolStatistics statistics : new SeriesPoolStatistics[] {
+				seriesPools.getSeriesStatistics(), seriesPools.getSeriesUnmanagedStatistics() }) {
+			assertThat(statistics.getSize() >= statistics.getIdle(), is(true));
+			assertThat(statistics.getActive(), is(0));
+			assertThat(statistics.getWaiters(), is(0));
+		}
+		assertThat(seriesPools.getSeriesStatistics().getMaxActive(), is(30));
+		assertThat(seriesPools.getSeriesUnmanagedStatistics().getMaxActive(), is(10));
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package org.superbiz.cdi.properties;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring, every node is placed +virtualNodes+ times on the ring so keys spread evenly and adding or removing
+ * a node only moves the keys of that node.
+ */
+public class ConsistentHashRing<T> {
+
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private final int virtualNodes;
+
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    public ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        this(virtualNodes);
+        for (Map.Entry<String, T> node : nodes.entrySet()) {
+            add(node.getKey(), node.getValue());
+        }
+    }
+
+    /**
+     * Places +node+ on the ring, +name+ decides where so it has to be stable across restarts.
+     */
+    public void add(String name, T node) {
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash(name + "#" + i), node);
+        }
+    }
+
+    public void remove(String name) {
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.remove(hash(name + "#" + i));
+        }
+    }
+
+    /**
+     * The node owning +key+, that is the first one clockwise from the hash of the key.
+     */
+    public T get(String key) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("No nodes on the ring");
+        }
+        SortedMap<Long, T> tail = ring.tailMap(hash(key));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    static long hash(String key) {
+        byte[] digest = MD5.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.superbiz.cdi.properties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of an import, updated live by the reading and writing threads.
+ */
+public class ImportStatistics {
+
+    private final long started = System.nanoTime();
+
+    private volatile long finished;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong documentsRead = new AtomicLong();
+    private final AtomicLong documentsInserted = new AtomicLong();
+    private final AtomicLong batchesInserted = new AtomicLong();
+
+    void read(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    void split(int documents) {
+        documentsRead.addAndGet(documents);
+    }
+
+    void inserted(int documents) {
+        documentsInserted.addAndGet(documents);
+        batchesInserted.incrementAndGet();
+    }
+
+    void finish() {
+        finished = System.nanoTime();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getDocumentsRead() {
+        return documentsRead.get();
+    }
+
+    public long getDocumentsInserted() {
+        return documentsInserted.get();
+    }
+
+    public long getBatchesInserted() {
+        return batchesInserted.get();
+    }
+
+    public boolean isFinished() {
+        return finished != 0;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((finished != 0 ? finished : System.nanoTime()) - started);
+    }
+
+    public double getDocumentsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : getDocumentsInserted() * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportStatistics [bytesRead=" + getBytesRead() + ", documentsRead=" + getDocumentsRead()
+                + ", documentsInserted=" + getDocumentsInserted() + ", batchesInserted=" + getBatchesInserted()
+                + ", elapsedMillis=" + getElapsedMillis() + ", documentsPerSecond=" + getDocumentsPerSecond() + "]";
+    }
+
+}
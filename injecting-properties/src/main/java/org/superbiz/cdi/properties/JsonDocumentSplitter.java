@@ -0,0 +1,75 @@
+package org.superbiz.cdi.properties;
+
+import java.nio.CharBuffer;
+import java.util.List;
+
+/**
+ * Cuts a stream of characters into top level JSON documents without parsing them, so a dump can be read in chunks of any
+ * size. Documents may be concatenated, one per line, or elements of a top level array.
+ */
+public class JsonDocumentSplitter {
+
+    private final StringBuilder document = new StringBuilder();
+
+    private int depth;
+
+    private boolean inString;
+
+    private boolean escaped;
+
+    /**
+     * Consumes every remaining character of +chars+ and adds the documents completed by them to +documents+, a document
+     * started but not finished is kept for the next call.
+     * 
+     * @return the number of documents added
+     */
+    public int feed(CharBuffer chars, List<String> documents) {
+        int added = 0;
+        while (chars.hasRemaining()) {
+            char c = chars.get();
+
+            if (depth == 0) {
+                if (c == '{') {
+                    document.append(c);
+                    depth = 1;
+                } else if (!Character.isWhitespace(c) && c != ',' && c != '[' && c != ']') {
+                    throw new IllegalArgumentException("Unexpected '" + c + "' between documents");
+                }
+                continue;
+            }
+
+            document.append(c);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    documents.add(document.toString());
+                    document.setLength(0);
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Checks the input did not end in the middle of a document.
+     */
+    public void finish() {
+        if (depth != 0) {
+            throw new IllegalArgumentException("Input ends inside a document");
+        }
+    }
+
+}
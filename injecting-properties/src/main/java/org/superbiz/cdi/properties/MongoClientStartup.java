@@ -0,0 +1,241 @@
+package org.superbiz.cdi.properties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mongodb.DB;
+import com.mongodb.MongoClient;
+
+/**
+ * Creates a client when the +startupMode+ says so and opens +warmConnections+ pooled connections of it.
+ * 
+ * The client is ready once they are open. A warm up that fails or times out is tried again every +retryInterval+
+ * milliseconds until one succeeds, so a server that comes up late still makes the client ready.
+ */
+final class MongoClientStartup {
+
+    private static final Logger LOGGER = Logger.getLogger(MongoClientStartup.class.getName());
+
+    interface ClientFactory {
+
+        MongoClient create();
+
+    }
+
+    private final ClientFactory factory;
+
+    private final int warmConnections;
+
+    private final long warmTimeout;
+
+    private final long retryInterval;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mongodb-startup");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final AtomicBoolean warming = new AtomicBoolean();
+
+    private volatile MongoClient client;
+
+    private volatile boolean ready;
+
+    MongoClientStartup(ClientFactory factory, int warmConnections, long warmTimeout, long retryInterval) {
+        this.factory = factory;
+        this.warmConnections = warmConnections;
+        this.warmTimeout = warmTimeout;
+        this.retryInterval = retryInterval;
+    }
+
+    /**
+     * +eager+ creates and warms the client on the calling thread, +background+ on another one and +lazy+ on first use.
+     */
+    void start(String startupMode) {
+        switch (startupMode.trim().toLowerCase(Locale.ROOT)) {
+        case "lazy":
+            break;
+        case "background":
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    get(true);
+                }
+            });
+            break;
+        default:
+            get(true);
+        }
+    }
+
+    /**
+     * The client, created now if it does not exist yet. A client created here is warmed in the background, the caller
+     * does not wait for it.
+     */
+    MongoClient get() {
+        return get(false);
+    }
+
+    boolean isCreated() {
+        return client != null;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Makes +replacement+ the client and returns the previous one. It is not ready until its connections, warmed in the
+     * background, are open.
+     */
+    synchronized MongoClient replace(MongoClient replacement) {
+        MongoClient previous = client;
+        client = replacement;
+        ready = false;
+        scheduleWarm(0);
+        return previous;
+    }
+
+    void close() {
+        scheduler.shutdownNow();
+        synchronized (this) {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    private MongoClient get(boolean warmNow) {
+        MongoClient current = client;
+        if (current == null) {
+            boolean created = false;
+            synchronized (this) {
+                current = client;
+                if (current == null) {
+                    current = factory.create();
+                    client = current;
+                    created = true;
+                }
+            }
+            if (created && warmNow) {
+                warm();
+            } else if (created) {
+                scheduleWarm(0);
+            }
+        }
+        return current;
+    }
+
+    private void scheduleWarm(long delay) {
+        if (warmConnections <= 0) {
+            ready = true;
+            return;
+        }
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    warm();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private void warm() {
+        if (warmConnections <= 0) {
+            ready = true;
+            return;
+        }
+        if (!warming.compareAndSet(false, true)) {
+            return; // another warm up is running
+        }
+        MongoClient warmedClient = client;
+        boolean warmed;
+        try {
+            warmed = openConnections(warmedClient);
+        } finally {
+            warming.set(false);
+        }
+        synchronized (this) {
+            if (warmedClient != client) {
+                scheduleWarm(0); // replaced meanwhile, its warm up found this one running
+            } else if (warmed) {
+                ready = true;
+            } else {
+                scheduleWarm(retryInterval);
+            }
+        }
+    }
+
+    // opens warmConnections pooled connections at the same time, requestStart() pins one connection to each thread
+    // until requestDone() so none of them can be reused by another thread while the others are being opened
+    private boolean openConnections(final MongoClient client) {
+        final int connections = Math.min(warmConnections, client.getMongoOptions().getConnectionsPerHost());
+        final CountDownLatch opened = new CountDownLatch(connections);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Throwable> failures = new ArrayList<>();
+        ExecutorService openers = Executors.newFixedThreadPool(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                openers.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        DB db = client.getDB("admin");
+                        db.requestStart();
+                        try {
+                            db.command("ping").throwOnError();
+                        } catch (RuntimeException e) {
+                            synchronized (failures) {
+                                failures.add(e);
+                            }
+                        } finally {
+                            opened.countDown();
+                            try {
+                                release.await(warmTimeout, TimeUnit.MILLISECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            db.requestDone();
+                        }
+                    }
+                });
+            }
+            if (!opened.await(warmTimeout, TimeUnit.MILLISECONDS)) {
+                LOGGER.warning("Timed out warming " + connections + " MongoDB connections, retrying in " + retryInterval + " ms");
+                return false;
+            }
+            synchronized (failures) {
+                if (!failures.isEmpty()) {
+                    LOGGER.log(Level.WARNING, "Could not warm " + failures.size() + " of " + connections
+                            + " MongoDB connections, retrying in " + retryInterval + " ms", failures.get(0));
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            release.countDown();
+            openers.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.superbiz.cdi.properties;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import javax.enterprise.util.Nonbinding;
+import javax.inject.Qualifier;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * Injects the +DBCollection+ +name+ of database +db+.
+ * 
+ * Settings are applied once, when the collection is first resolved, so every injection point of the same collection
+ * must declare the same ones: resolving it with others fails with an +IllegalArgumentException+. Blank settings keep
+ * the client defaults.
+ */
+@Qualifier
+@Retention(RUNTIME)
+@Target({METHOD, FIELD, PARAMETER, TYPE})
+public @interface MongoCollection {
+
+    @Nonbinding
+    String db() default "test";
+
+    @Nonbinding
+    String name();
+
+    /**
+     * Name of a +WriteConcern+ constant, like +ACKNOWLEDGED+ or +MAJORITY+.
+     */
+    @Nonbinding
+    String writeConcern() default "";
+
+    /**
+     * Name of a +ReadPreference+, like +secondaryPreferred+ or +nearest+.
+     */
+    @Nonbinding
+    String readPreference() default "";
+
+    /**
+     * Class documents are decoded into.
+     */
+    @Nonbinding
+    Class<? extends DBObject> objectClass() default BasicDBObject.class;
+
+}
@@ -1,22 +1,88 @@
 package org.superbiz.cdi.properties;
 
+import java.lang.annotation.Annotation;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.spi.InjectionPoint;
 import javax.inject.Inject;
 
 import org.apache.deltaspike.core.api.config.ConfigProperty;
 
-import com.mongodb.DB;
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DBPortPool;
+import com.mongodb.InUseConnectionBean;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import com.mongodb.util.ConnectionPoolStatisticsBean;
 
 @ApplicationScoped
 public class MongoDbFactory {
 
-    MongoClient mongo;
+    private static final Logger LOGGER = Logger.getLogger(MongoDbFactory.class.getName());
+
+    private static final String DEFAULT_READ_PREFERENCE = "primary";
+    private static final String DEFAULT_CONNECTIONS_PER_HOST = "100";
+    private static final String DEFAULT_THREADS_ALLOWED_TO_BLOCK_FOR_CONNECTION_MULTIPLIER = "5";
+    private static final String DEFAULT_MAX_WAIT_TIME = "120000";
+    private static final String DEFAULT_CONNECT_TIMEOUT = "10000";
+    private static final String DEFAULT_SOCKET_TIMEOUT = "0";
+
+    private MongoClientStartup startup;
+
+    // replaced by a reload, a DBCollection resolved before may still use them for retiredCloseDelay milliseconds
+    private final List<MongoClient> retired = new ArrayList<>();
+
+    private ScheduledExecutorService retirement;
+
+    // what a setting removed from the external file goes back to
+    private MongoDbSettings defaults;
+
+    private MongoDbSettingsSource settingsSource;
+
+    // by endpoint, both maps are replaced as a whole by a reload
+    private volatile Map<String, MongoClient> shardClients = new LinkedHashMap<>();
+
+    private volatile Map<String, DBCollection> shardRecipes = new LinkedHashMap<>();
+
+    private ExecutorService shardExecutor;
+
+    private volatile ShardedCollection shardedRecipes;
+
+    private final MongoDbSettingsListener settingsListener = new MongoDbSettingsListener() {
+        @Override
+        public void settingsChanged(MongoDbSettings previous, MongoDbSettings current) {
+            if (current.isClientChanged(previous)) {
+                apply(current);
+            }
+        }
+    };
+
+    private final ConcurrentMap<String, ResolvedCollection> collections = new ConcurrentHashMap<>();
 
     @Inject
     @ConfigProperty(name = "host") // <1> Using +Inject+ and +ConfigProperty+ annotation from _DeltaSpike_ together to inject the configuration value.
@@ -26,22 +92,509 @@ public class MongoDbFactory {
     @ConfigProperty(name = "port")
     private Integer port; // <2> Native conversions are provided automatically.
 
-    @PostConstruct // <3> After the construction of this POJO, the +MongoClient+ instance is created with injected parameters.
+    @Inject
+    @ConfigProperty(name = "hosts", defaultValue = "") // <3> A comma separated seed list of replica set members, used instead of +host+ and +port+ when present.
+    private String hosts;
+
+    @Inject
+    @ConfigProperty(name = "readPreference", defaultValue = DEFAULT_READ_PREFERENCE)
+    private String readPreference;
+
+    @Inject
+    @ConfigProperty(name = "recipes.readPreference", defaultValue = "")
+    private String recipesReadPreference;
+
+    @Inject
+    @ConfigProperty(name = "connectionsPerHost", defaultValue = DEFAULT_CONNECTIONS_PER_HOST) // <4> Pool settings are optional, +defaultValue+ is used when the property is missing.
+    private Integer connectionsPerHost;
+
+    @Inject
+    @ConfigProperty(name = "threadsAllowedToBlockForConnectionMultiplier",
+            defaultValue = DEFAULT_THREADS_ALLOWED_TO_BLOCK_FOR_CONNECTION_MULTIPLIER)
+    private Integer threadsAllowedToBlockForConnectionMultiplier;
+
+    @Inject
+    @ConfigProperty(name = "maxWaitTime", defaultValue = DEFAULT_MAX_WAIT_TIME)
+    private Integer maxWaitTime;
+
+    @Inject
+    @ConfigProperty(name = "connectTimeout", defaultValue = DEFAULT_CONNECT_TIMEOUT)
+    private Integer connectTimeout;
+
+    @Inject
+    @ConfigProperty(name = "socketTimeout", defaultValue = DEFAULT_SOCKET_TIMEOUT)
+    private Integer socketTimeout;
+
+    @Inject
+    @ConfigProperty(name = "startupMode", defaultValue = "eager") // <5> +eager+, +lazy+ or +background+.
+    private String startupMode;
+
+    @Inject
+    @ConfigProperty(name = "warmConnections", defaultValue = "0")
+    private Integer warmConnections;
+
+    @Inject
+    @ConfigProperty(name = "warmRetryInterval", defaultValue = "5000")
+    private Integer warmRetryInterval;
+
+    @Inject
+    @ConfigProperty(name = "retiredCloseDelay", defaultValue = "60000")
+    private Integer retiredCloseDelay;
+
+    @Inject
+    @ConfigProperty(name = "shards", defaultValue = "") // <6> Comma separated +host:port+ endpoints, each one holding part of the recipes.
+    private String shards;
+
+    @Inject
+    @ConfigProperty(name = "shardKey", defaultValue = "_id")
+    private String shardKey;
+
+    @Inject
+    @ConfigProperty(name = "virtualNodes", defaultValue = "160")
+    private Integer virtualNodes;
+
+    @PostConstruct // <7> After the construction of this POJO, the +MongoClient+ instance is created with injected parameters, unless its creation is deferred by +startupMode+.
     public void init() {
+        settingsSource = MongoDbSettingsSource.get();
+        defaults = defaults(settingsSource == null ? MongoDbSettings.EMPTY : settingsSource.getSettings());
+        if (settingsSource != null) {
+            settingsSource.addListener(settingsListener);
+        }
+        retirement = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mongodb-retirement");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        startup = new MongoClientStartup(new MongoClientStartup.ClientFactory() {
+            @Override
+            public MongoClient create() {
+                return createClient(getOptions());
+            }
+        }, Math.min(warmConnections, connectionsPerHost), connectTimeout + maxWaitTime, warmRetryInterval);
+        startup.start(startupMode);
+    }
+
+    // the injected values, unless they came from the external file: those keys go back to the built-in defaults
+    private MongoDbSettings defaults(MongoDbSettings external) {
+        Properties values = new Properties();
+        putDefault(values, external, "readPreference", readPreference, DEFAULT_READ_PREFERENCE);
+        putDefault(values, external, "connectionsPerHost", connectionsPerHost, DEFAULT_CONNECTIONS_PER_HOST);
+        putDefault(values, external, "threadsAllowedToBlockForConnectionMultiplier",
+                threadsAllowedToBlockForConnectionMultiplier, DEFAULT_THREADS_ALLOWED_TO_BLOCK_FOR_CONNECTION_MULTIPLIER);
+        putDefault(values, external, "maxWaitTime", maxWaitTime, DEFAULT_MAX_WAIT_TIME);
+        putDefault(values, external, "connectTimeout", connectTimeout, DEFAULT_CONNECT_TIMEOUT);
+        putDefault(values, external, "socketTimeout", socketTimeout, DEFAULT_SOCKET_TIMEOUT);
+        return new MongoDbSettings(values);
+    }
+
+    private static void putDefault(Properties values, MongoDbSettings external, String key, Object injected,
+            String defaultValue) {
+        values.setProperty(key, external.get(key) == null ? String.valueOf(injected) : defaultValue);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (settingsSource != null) {
+            settingsSource.removeListener(settingsListener);
+            MongoDbSettingsSource.shutdown();
+        }
+        if (shardExecutor != null) {
+            shardExecutor.shutdownNow();
+        }
+        if (retirement != null) {
+            retirement.shutdownNow();
+        }
+        synchronized (this) {
+            for (MongoClient client : shardClients.values()) {
+                client.close();
+            }
+            for (MongoClient client : retired) {
+                client.close();
+            }
+            if (startup != null) {
+                startup.close();
+            }
+        }
+    }
+
+    /**
+     * Applies changed pool, timeout and read preference settings from the external file, a setting missing from it
+     * goes back to its default. The clients are replaced by ones with the new options, which are built first so
+     * invalid settings leave everything as it was, and nothing is replaced when the options end up the same.
+     * 
+     * +ReloadableCollection+ and +ShardedCollection+ handles move to the new clients. A +DBCollection+ resolved before
+     * keeps the previous client, which is closed +retiredCloseDelay+ milliseconds later.
+     */
+    public synchronized void apply(MongoDbSettings settings) {
+        String newReadPreference = valueOf(settings.getReadPreference(), defaults.getReadPreference());
+        Integer newConnectionsPerHost = valueOf(settings.getConnectionsPerHost(), defaults.getConnectionsPerHost());
+        Integer newThreadsAllowedToBlockForConnectionMultiplier = valueOf(
+                settings.getThreadsAllowedToBlockForConnectionMultiplier(),
+                defaults.getThreadsAllowedToBlockForConnectionMultiplier());
+        Integer newMaxWaitTime = valueOf(settings.getMaxWaitTime(), defaults.getMaxWaitTime());
+        Integer newConnectTimeout = valueOf(settings.getConnectTimeout(), defaults.getConnectTimeout());
+        Integer newSocketTimeout = valueOf(settings.getSocketTimeout(), defaults.getSocketTimeout());
+
+        if (newReadPreference.equals(readPreference) && newConnectionsPerHost.equals(connectionsPerHost)
+                && newThreadsAllowedToBlockForConnectionMultiplier.equals(threadsAllowedToBlockForConnectionMultiplier)
+                && newMaxWaitTime.equals(maxWaitTime) && newConnectTimeout.equals(connectTimeout)
+                && newSocketTimeout.equals(socketTimeout)) {
+            return;
+        }
+
+        MongoClient replacement = null;
+        Map<String, MongoClient> replacementShards = new LinkedHashMap<>();
         try {
-            mongo = new MongoClient(host, port);
-        } catch (UnknownHostException e) {
-            throw new IllegalArgumentException(e);
+            MongoClientOptions options = options(newReadPreference, newConnectionsPerHost,
+                    newThreadsAllowedToBlockForConnectionMultiplier, newMaxWaitTime, newConnectTimeout, newSocketTimeout);
+            if (startup.isCreated()) {
+                replacement = createClient(options);
+            }
+            for (String endpoint : shardClients.keySet()) {
+                replacementShards.put(endpoint, new MongoClient(new ServerAddress(endpoint), options));
+            }
+        } catch (UnknownHostException | RuntimeException e) {
+            if (replacement != null) {
+                replacement.close();
+            }
+            for (MongoClient client : replacementShards.values()) {
+                client.close();
+            }
+            LOGGER.log(Level.WARNING, "Invalid MongoDB settings, keeping the current ones", e);
+            return;
+        }
+
+        readPreference = newReadPreference;
+        connectionsPerHost = newConnectionsPerHost;
+        threadsAllowedToBlockForConnectionMultiplier = newThreadsAllowedToBlockForConnectionMultiplier;
+        maxWaitTime = newMaxWaitTime;
+        connectTimeout = newConnectTimeout;
+        socketTimeout = newSocketTimeout;
+
+        List<MongoClient> replaced = new ArrayList<>();
+        if (replacement != null) {
+            replaced.add(startup.replace(replacement));
+            collections.clear();
         }
+        if (!replacementShards.isEmpty()) {
+            replaced.addAll(shardClients.values());
+            shardRecipes = recipesOf(replacementShards);
+            shardClients = replacementShards;
+        }
+        retire(replaced);
+        LOGGER.info("MongoDB clients recreated with " + getOptions());
+    }
+
+    private void retire(final List<MongoClient> clients) {
+        retired.addAll(clients);
+        try {
+            retirement.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (MongoDbFactory.this) {
+                        for (MongoClient client : clients) {
+                            if (retired.remove(client)) {
+                                client.close();
+                            }
+                        }
+                    }
+                }
+            }, retiredCloseDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closing, the factory closes them
+        }
+    }
+
+    private static <T> T valueOf(T value, T current) {
+        return value == null ? current : value;
+    }
+
+    /**
+     * The client, created on first use when +startupMode+ is +lazy+ or the background warm up has not got to it yet.
+     */
+    public MongoClient getMongo() {
+        return startup.get();
+    }
+
+    private MongoClient createClient(MongoClientOptions options) {
+        List<ServerAddress> seeds = getSeeds();
+        // a single address connects directly to that server, a list makes the driver discover the replica set
+        return seeds.size() == 1 ? new MongoClient(seeds.get(0), options) : new MongoClient(seeds, options);
+    }
+
+    /**
+     * Whether the client exists and its +warmConnections+ connections have been opened, non _MongoDB_ traffic does not
+     * need to wait for it. A warm up that fails is retried every +warmRetryInterval+ milliseconds.
+     */
+    public boolean isReady() {
+        return startup.isReady();
     }
 
     @Produces
     @RecipesCollection
-    public DBCollection getRecipeCollection() { // <4> This method acts as a producer for _recipies MongoDB_ collections. 
-        DB db = mongo.getDB("test");
-        return db.getCollection("recipes");
+    public DBCollection getRecipeCollection() { // <8> This method acts as a producer for _recipies MongoDB_ collections, reads are routed by +recipes.readPreference+.
+        return getCollection("test", "recipes", "", recipesReadPreference, BasicDBObject.class);
     }
-    
+
+    @Produces
+    @RecipesCollection
+    public ReloadableCollection getReloadableRecipeCollection() {
+        return new ReloadableCollection() {
+            @Override
+            public DBCollection get() {
+                return getRecipeCollection();
+            }
+        };
+    }
+
+    @Produces
+    @RecipesCollection
+    public ShardedCollection getShardedRecipeCollection() { // <9> The same qualifier on a +ShardedCollection+ gives the routing facade, with a single shard when +shards+ is not set.
+        ShardedCollection collection = shardedRecipes;
+        if (collection == null) {
+            synchronized (this) {
+                collection = shardedRecipes;
+                if (collection == null) {
+                    collection = createShardedRecipes();
+                    shardedRecipes = collection;
+                }
+            }
+        }
+        return collection;
+    }
+
+    private ShardedCollection createShardedRecipes() {
+        Map<String, ReloadableCollection> collections = new LinkedHashMap<>();
+        if (isBlank(shards)) {
+            collections.put("default", getReloadableRecipeCollection());
+            return new ShardedCollection(collections, shardKey, virtualNodes, null);
+        }
+
+        if (shardClients.isEmpty()) {
+            Map<String, MongoClient> clients = new LinkedHashMap<>();
+            try {
+                for (String endpoint : shards.split(",")) {
+                    if (!endpoint.trim().isEmpty()) {
+                        clients.put(endpoint.trim(), new MongoClient(new ServerAddress(endpoint.trim()), getOptions()));
+                    }
+                }
+            } catch (UnknownHostException e) {
+                for (MongoClient client : clients.values()) {
+                    client.close();
+                }
+                throw new IllegalArgumentException(e);
+            }
+            shardRecipes = recipesOf(clients);
+            shardClients = clients;
+            shardExecutor = Executors.newFixedThreadPool(clients.size(), new ThreadFactory() {
+                private final AtomicInteger threads = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "mongodb-shards-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        for (final String endpoint : shardClients.keySet()) {
+            collections.put(endpoint, new ReloadableCollection() { // the endpoint places the shard on the ring
+                @Override
+                public DBCollection get() {
+                    return shardRecipes.get(endpoint);
+                }
+            });
+        }
+        return new ShardedCollection(collections, shardKey, virtualNodes, shardExecutor);
+    }
+
+    private Map<String, DBCollection> recipesOf(Map<String, MongoClient> clients) {
+        Map<String, DBCollection> recipes = new LinkedHashMap<>();
+        for (Map.Entry<String, MongoClient> client : clients.entrySet()) {
+            DBCollection collection = client.getValue().getDB("test").getCollection("recipes");
+            if (!isBlank(recipesReadPreference)) {
+                collection.setReadPreference(ReadPreference.valueOf(recipesReadPreference.trim()));
+            }
+            recipes.put(client.getKey(), collection);
+        }
+        return recipes;
+    }
+
+    @Produces
+    @MongoCollection(name = "")
+    public DBCollection getCollection(InjectionPoint injectionPoint) { // <10> A single producer for any collection, the qualifier members say which one and how to configure it.
+        MongoCollection collection = qualifierOf(injectionPoint);
+        return getCollection(collection.db(), collection.name(), collection.writeConcern(), collection.readPreference(),
+                collection.objectClass());
+    }
+
+    @Produces
+    @MongoCollection(name = "")
+    public ReloadableCollection getReloadableCollection(InjectionPoint injectionPoint) {
+        final MongoCollection collection = qualifierOf(injectionPoint);
+        return new ReloadableCollection() {
+            @Override
+            public DBCollection get() {
+                return getCollection(collection.db(), collection.name(), collection.writeConcern(),
+                        collection.readPreference(), collection.objectClass());
+            }
+        };
+    }
+
+    private static MongoCollection qualifierOf(InjectionPoint injectionPoint) {
+        for (Annotation qualifier : injectionPoint.getQualifiers()) {
+            if (qualifier instanceof MongoCollection) {
+                return (MongoCollection) qualifier;
+            }
+        }
+        throw new IllegalArgumentException("No @MongoCollection qualifier on " + injectionPoint);
+    }
+
+    /**
+     * Cached collection handle, blank settings keep the client defaults. The driver hands out one +DBCollection+ per
+     * name and client, so asking for a collection already resolved with other settings fails instead of changing them
+     * under the injection points that have it.
+     */
+    public DBCollection getCollection(String database, String name, String writeConcern, String readPreference,
+            Class<? extends DBObject> objectClass) {
+        String key = database + "." + name;
+        ResolvedCollection wanted = new ResolvedCollection(trim(writeConcern), trim(readPreference), objectClass);
+        ResolvedCollection resolved = collections.get(key);
+        if (resolved == null) {
+            synchronized (this) {
+                resolved = collections.get(key);
+                if (resolved == null) {
+                    wanted.configure(getMongo().getDB(database).getCollection(name));
+                    collections.put(key, wanted);
+                    return wanted.collection;
+                }
+            }
+        }
+
+        if (!resolved.hasSettingsOf(wanted)) {
+            throw new IllegalArgumentException("Collection " + key + " is already resolved with " + resolved
+                    + ", it cannot also be used with " + wanted);
+        }
+        return resolved.collection;
+    }
+
+    private static String trim(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    private static final class ResolvedCollection {
+
+        private final String writeConcern;
+        private final String readPreference;
+        private final Class<? extends DBObject> objectClass;
+        private DBCollection collection;
+
+        ResolvedCollection(String writeConcern, String readPreference, Class<? extends DBObject> objectClass) {
+            this.writeConcern = writeConcern;
+            this.readPreference = readPreference;
+            this.objectClass = objectClass;
+        }
+
+        void configure(DBCollection collection) {
+            if (!writeConcern.isEmpty()) {
+                WriteConcern concern = WriteConcern.valueOf(writeConcern);
+                if (concern == null) {
+                    throw new IllegalArgumentException("Unknown write concern " + writeConcern);
+                }
+                collection.setWriteConcern(concern);
+            }
+            if (!readPreference.isEmpty()) {
+                collection.setReadPreference(ReadPreference.valueOf(readPreference));
+            }
+            collection.setObjectClass(objectClass);
+            this.collection = collection;
+        }
+
+        boolean hasSettingsOf(ResolvedCollection other) {
+            return writeConcern.equals(other.writeConcern) && readPreference.equals(other.readPreference)
+                    && objectClass.equals(other.objectClass);
+        }
+
+        @Override
+        public String toString() {
+            return "writeConcern=" + writeConcern + ", readPreference=" + readPreference + ", objectClass="
+                    + objectClass.getName();
+        }
+
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    public List<ServerAddress> getSeeds() {
+        List<ServerAddress> seeds = new ArrayList<>();
+        try {
+            if (isBlank(hosts)) {
+                seeds.add(new ServerAddress(host, port));
+            } else {
+                for (String seed : hosts.split(",")) {
+                    if (!seed.trim().isEmpty()) {
+                        seeds.add(new ServerAddress(seed.trim()));
+                    }
+                }
+            }
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return seeds;
+    }
+
+    public MongoClientOptions getOptions() {
+        return options(readPreference, connectionsPerHost, threadsAllowedToBlockForConnectionMultiplier, maxWaitTime,
+                connectTimeout, socketTimeout);
+    }
+
+    private static MongoClientOptions options(String readPreference, int connectionsPerHost,
+            int threadsAllowedToBlockForConnectionMultiplier, int maxWaitTime, int connectTimeout, int socketTimeout) {
+        return MongoClientOptions.builder()
+                .readPreference(ReadPreference.valueOf(readPreference.trim()))
+                .connectionsPerHost(connectionsPerHost)
+                .threadsAllowedToBlockForConnectionMultiplier(threadsAllowedToBlockForConnectionMultiplier)
+                .maxWaitTime(maxWaitTime)
+                .connectTimeout(connectTimeout)
+                .socketTimeout(socketTimeout)
+                .build();
+    }
+
+    /**
+     * Live statistics of the connection pool of every server the client and the shard clients know about. The 2.x
+     * driver does not publish how many threads are waiting for a connection, only what is checked out.
+     */
+    public List<MongoPoolStatistics> getPoolStatistics() {
+        List<MongoPoolStatistics> statistics = new ArrayList<>();
+        addPoolStatistics("default", getMongo(), statistics);
+        for (Map.Entry<String, MongoClient> shard : shardClients.entrySet()) {
+            addPoolStatistics(shard.getKey(), shard.getValue(), statistics);
+        }
+        return statistics;
+    }
+
+    private static void addPoolStatistics(String name, MongoClient client, List<MongoPoolStatistics> statistics) {
+        for (ServerAddress address : client.getServerAddressList()) {
+            DBPortPool pool = client.getConnector().getDBPortPool(address);
+            ConnectionPoolStatisticsBean bean = pool.getStatistics();
+
+            long longestInUse = 0;
+            for (InUseConnectionBean connection : bean.getInUseConnections()) {
+                longestInUse = Math.max(longestInUse, connection.getDurationMS());
+            }
+
+            statistics.add(new MongoPoolStatistics(name, address.getHost(), address.getPort(), pool.getMaxSize(),
+                    bean.getTotal(), bean.getInUse(), longestInUse));
+        }
+    }
+
     public String getHost() {
         return host;
     }
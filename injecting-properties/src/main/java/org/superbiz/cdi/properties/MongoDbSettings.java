@@ -0,0 +1,93 @@
+package org.superbiz.cdi.properties;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Immutable snapshot of the external +mongodb.properties+ file. Numeric values are converted once, when the file is
+ * read, so reading them does not allocate.
+ */
+public final class MongoDbSettings {
+
+    static final MongoDbSettings EMPTY = new MongoDbSettings(new Properties());
+
+    private final Map<String, String> properties;
+
+    private final Integer connectionsPerHost;
+    private final Integer threadsAllowedToBlockForConnectionMultiplier;
+    private final Integer maxWaitTime;
+    private final Integer connectTimeout;
+    private final Integer socketTimeout;
+    private final String readPreference;
+
+    public MongoDbSettings(Properties source) {
+        Map<String, String> values = new HashMap<>();
+        for (String key : source.stringPropertyNames()) {
+            values.put(key, source.getProperty(key).trim());
+        }
+        this.properties = Collections.unmodifiableMap(values);
+
+        this.connectionsPerHost = integer("connectionsPerHost");
+        this.threadsAllowedToBlockForConnectionMultiplier = integer("threadsAllowedToBlockForConnectionMultiplier");
+        this.maxWaitTime = integer("maxWaitTime");
+        this.connectTimeout = integer("connectTimeout");
+        this.socketTimeout = integer("socketTimeout");
+        this.readPreference = properties.get("readPreference");
+    }
+
+    private Integer integer(String key) {
+        String value = properties.get(key);
+        return value == null || value.isEmpty() ? null : Integer.valueOf(value);
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public String get(String key) {
+        return properties.get(key);
+    }
+
+    /**
+     * Whether the pool or timeout settings differ, those are the ones a running client has to be rebuilt for.
+     */
+    public boolean isClientChanged(MongoDbSettings other) {
+        return !equal(connectionsPerHost, other.connectionsPerHost)
+                || !equal(threadsAllowedToBlockForConnectionMultiplier, other.threadsAllowedToBlockForConnectionMultiplier)
+                || !equal(maxWaitTime, other.maxWaitTime)
+                || !equal(connectTimeout, other.connectTimeout)
+                || !equal(socketTimeout, other.socketTimeout)
+                || !equal(readPreference, other.readPreference);
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    public Integer getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    public Integer getThreadsAllowedToBlockForConnectionMultiplier() {
+        return threadsAllowedToBlockForConnectionMultiplier;
+    }
+
+    public Integer getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public Integer getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public Integer getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public String getReadPreference() {
+        return readPreference;
+    }
+
+}
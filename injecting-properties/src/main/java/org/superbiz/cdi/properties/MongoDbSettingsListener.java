@@ -0,0 +1,7 @@
+package org.superbiz.cdi.properties;
+
+public interface MongoDbSettingsListener {
+
+    void settingsChanged(MongoDbSettings previous, MongoDbSettings current);
+
+}
@@ -0,0 +1,222 @@
+package org.superbiz.cdi.properties;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.deltaspike.core.spi.config.ConfigSource;
+
+/**
+ * _DeltaSpike_ +ConfigSource+ over an external properties file that is read again every time it changes on disk.
+ * 
+ * Every read publishes a new +MongoDbSettings+ snapshot, lookups only dereference the current one. Listeners are told
+ * about each new snapshot from the watching thread.
+ */
+public class MongoDbSettingsSource implements ConfigSource {
+
+    private static final Logger LOGGER = Logger.getLogger(MongoDbSettingsSource.class.getName());
+
+    /**
+     * System property with the path of the external file.
+     */
+    public static final String FILE_PROPERTY = "mongodb.config";
+
+    // above the ordinal of property files on the classpath, so the external file overrides mongodb.properties
+    private static final int ORDINAL = 200;
+
+    // editors write a file in several steps, the events of one save are let through before it is read
+    private static final long SETTLE_DELAY = 200;
+
+    private static volatile MongoDbSettingsSource instance;
+
+    private final Path file;
+
+    private final AtomicReference<MongoDbSettings> settings = new AtomicReference<>(MongoDbSettings.EMPTY);
+
+    private final List<MongoDbSettingsListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final WatchService watcher;
+
+    public MongoDbSettingsSource(Path file) throws IOException {
+        this.file = file.toAbsolutePath();
+        reload();
+
+        this.watcher = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY); // editors often replace instead of write
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "mongodb-settings-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The source of the file named by the +mongodb.config+ system property, +null+ when it is not set.
+     */
+    public static MongoDbSettingsSource get() {
+        String path = System.getProperty(FILE_PROPERTY);
+        if (path == null || path.trim().isEmpty()) {
+            return null;
+        }
+
+        MongoDbSettingsSource source = instance;
+        if (source == null) {
+            synchronized (MongoDbSettingsSource.class) {
+                source = instance;
+                if (source == null) {
+                    try {
+                        source = new MongoDbSettingsSource(Paths.get(path.trim()));
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException("Cannot watch " + path, e);
+                    }
+                    instance = source;
+                }
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Closes the source returned by {@link #get()} and stops its watching thread, the next +get()+ opens a new one.
+     */
+    public static void shutdown() {
+        synchronized (MongoDbSettingsSource.class) {
+            MongoDbSettingsSource source = instance;
+            instance = null;
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Cannot close the MongoDB settings watcher", e);
+                }
+            }
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+
+                if (changed) {
+                    settle();
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private void settle() throws InterruptedException {
+        Thread.sleep(SETTLE_DELAY);
+        WatchKey key;
+        while ((key = watcher.poll()) != null) {
+            key.pollEvents();
+            key.reset();
+        }
+    }
+
+    /**
+     * Reads the file and publishes its content, a file that cannot be read keeps the previous settings. Nothing is
+     * published when the content did not change.
+     */
+    public void reload() {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot read " + file + ", keeping the previous MongoDB settings", e);
+            return;
+        }
+
+        MongoDbSettings current;
+        try {
+            current = new MongoDbSettings(properties);
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid value in " + file + ", keeping the previous MongoDB settings", e);
+            return;
+        }
+
+        MongoDbSettings previous = settings.getAndSet(current);
+        if (previous.getProperties().equals(current.getProperties())) {
+            return;
+        }
+        for (MongoDbSettingsListener listener : listeners) {
+            try {
+                listener.settingsChanged(previous, current);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "MongoDB settings listener failed", e);
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        watcher.close();
+    }
+
+    public MongoDbSettings getSettings() {
+        return settings.get();
+    }
+
+    public void addListener(MongoDbSettingsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MongoDbSettingsListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public int getOrdinal() {
+        return ORDINAL;
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        return settings.get().getProperties();
+    }
+
+    @Override
+    public String getPropertyValue(String key) {
+        return settings.get().get(key);
+    }
+
+    @Override
+    public String getConfigName() {
+        return file.toString();
+    }
+
+    @Override
+    public boolean isScannable() {
+        return true;
+    }
+
+}
@@ -0,0 +1,20 @@
+package org.superbiz.cdi.properties;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.deltaspike.core.spi.config.ConfigSource;
+import org.apache.deltaspike.core.spi.config.ConfigSourceProvider;
+
+public class MongoDbSettingsSourceProvider implements ConfigSourceProvider {
+
+    @Override
+    public List<ConfigSource> getConfigSources() {
+        MongoDbSettingsSource source = MongoDbSettingsSource.get(); // <1> Registered through +META-INF/services+, only when the +mongodb.config+ system property names an external file.
+        if (source == null) {
+            return Collections.emptyList();
+        }
+        return Collections.<ConfigSource> singletonList(source);
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.superbiz.cdi.properties;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of one connection pool, as published by the driver through +DBPortPool.getStatistics()+, the data behind
+ * its +MongoConnectionPoolMXBean+.
+ */
+public class MongoPoolStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String client;
+    private final String host;
+    private final int port;
+    private final int maxSize;
+    private final int total;
+    private final int inUse;
+    private final long longestInUse;
+
+    public MongoPoolStatistics(String client, String host, int port, int maxSize, int total, int inUse,
+            long longestInUse) {
+        this.client = client;
+        this.host = host;
+        this.port = port;
+        this.maxSize = maxSize;
+        this.total = total;
+        this.inUse = inUse;
+        this.longestInUse = longestInUse;
+    }
+
+    /**
+     * +default+ for the main client, the +host:port+ endpoint for a shard client.
+     */
+    public String getClient() {
+        return client;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * +connectionsPerHost+ the pool was created with.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Connections currently open, checked out or idle.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Connections currently checked out.
+     */
+    public int getInUse() {
+        return inUse;
+    }
+
+    /**
+     * Milliseconds the longest held of the connections currently checked out has been in use, 0 when none is.
+     */
+    public long getLongestInUse() {
+        return longestInUse;
+    }
+
+    @Override
+    public String toString() {
+        return client + " " + host + ":" + port + " inUse=" + inUse + "/" + maxSize + " total=" + total
+                + " longestInUse=" + longestInUse + "ms";
+    }
+
+}
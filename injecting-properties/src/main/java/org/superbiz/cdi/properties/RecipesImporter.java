@@ -0,0 +1,227 @@
+package org.superbiz.cdi.properties;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+/**
+ * Loads JSON dumps into the recipes collection.
+ * 
+ * The calling thread reads the file through a +FileChannel+ and cuts it into documents, batches of them go through a bounded
+ * queue to +import.writers+ threads that parse and insert them. When the writers fall behind the reader blocks on the
+ * queue, so memory use does not depend on the size of the dump.
+ * 
+ * When +shards+ are configured the recipes are written through the +ShardedCollection+, each batch is split by shard.
+ */
+@ApplicationScoped
+public class RecipesImporter {
+
+    // tells a writer there are no more batches
+    private static final List<String> END = Collections.emptyList();
+
+    @Inject
+    MongoDbFactory mongoDbFactory;
+
+    @Inject
+    @ConfigProperty(name = "import.writers", defaultValue = "4")
+    private Integer writers;
+
+    @Inject
+    @ConfigProperty(name = "import.batchSize", defaultValue = "1000")
+    private Integer batchSize;
+
+    @Inject
+    @ConfigProperty(name = "import.queueCapacity", defaultValue = "16") // in batches
+    private Integer queueCapacity;
+
+    @Inject
+    @ConfigProperty(name = "import.bufferSize", defaultValue = "65536")
+    private Integer bufferSize;
+
+    private volatile ImportStatistics progress;
+
+    /**
+     * Statistics of the running import, or of the last one.
+     */
+    public ImportStatistics getProgress() {
+        return progress;
+    }
+
+    public ImportStatistics importRecipes(Path file) throws IOException {
+        return importInto(mongoDbFactory.getShardedRecipeCollection(), file);
+    }
+
+    public ImportStatistics importInto(final DBCollection collection, Path file) throws IOException {
+        return importInto(new Destination() {
+            @Override
+            public void insert(List<DBObject> documents) {
+                collection.insert(documents);
+            }
+        }, file);
+    }
+
+    public ImportStatistics importInto(final ShardedCollection collection, Path file) throws IOException {
+        return importInto(new Destination() {
+            @Override
+            public void insert(List<DBObject> documents) {
+                collection.insert(documents);
+            }
+        }, file);
+    }
+
+    private interface Destination {
+
+        void insert(List<DBObject> documents);
+
+    }
+
+    private ImportStatistics importInto(final Destination destination, Path file) throws IOException {
+        final ImportStatistics statistics = new ImportStatistics();
+        progress = statistics;
+
+        final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        for (int i = 0; i < writers; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    write(destination, queue, statistics, failure);
+                }
+            });
+        }
+
+        try {
+            read(file, queue, statistics, failure);
+
+            for (int i = 0; i < writers; i++) {
+                put(queue, END, failure);
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // the writers finish the batches still queued
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import of " + file + " interrupted");
+        } finally {
+            executor.shutdownNow();
+            statistics.finish();
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return statistics;
+    }
+
+    private void read(Path file, BlockingQueue<List<String>> queue, ImportStatistics statistics,
+            AtomicReference<RuntimeException> failure) throws IOException, InterruptedException {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(bufferSize);
+        CharBuffer chars = CharBuffer.allocate(bufferSize); // UTF-8 never decodes to more chars than bytes
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        JsonDocumentSplitter splitter = new JsonDocumentSplitter();
+
+        List<String> documents = new ArrayList<>();
+        List<String> batch = new ArrayList<>(batchSize);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean eof = false;
+            while (!eof) {
+                int read = channel.read(bytes);
+                eof = read < 0;
+                if (read > 0) {
+                    statistics.read(read);
+                }
+
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, eof);
+                if (eof && !result.isError()) {
+                    result = decoder.flush(chars);
+                }
+                if (result.isError()) {
+                    result.throwException();
+                }
+                bytes.compact(); // keeps the bytes of a character split between two reads
+
+                chars.flip();
+                statistics.split(splitter.feed(chars, documents));
+                chars.clear();
+
+                for (String document : documents) {
+                    batch.add(document);
+                    if (batch.size() == batchSize) {
+                        put(queue, batch, failure);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                documents.clear();
+            }
+            splitter.finish();
+        }
+
+        if (!batch.isEmpty()) {
+            put(queue, batch, failure);
+        }
+    }
+
+    // stops waiting for room in the queue as soon as a writer failed, the others may not be taking batches anymore
+    private static void put(BlockingQueue<List<String>> queue, List<String> batch, AtomicReference<RuntimeException> failure)
+            throws InterruptedException {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        }
+    }
+
+    private static void write(Destination destination, BlockingQueue<List<String>> queue, ImportStatistics statistics,
+            AtomicReference<RuntimeException> failure) {
+        try {
+            List<DBObject> documents = new ArrayList<>();
+            for (List<String> batch = queue.take(); batch != END; batch = queue.take()) {
+                for (String json : batch) {
+                    Object document = JSON.parse(json);
+                    if (!(document instanceof DBObject)) {
+                        throw new IllegalArgumentException("Not a document: " + json);
+                    }
+                    documents.add((DBObject) document);
+                }
+                destination.insert(documents);
+                statistics.inserted(documents.size());
+                documents.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+}
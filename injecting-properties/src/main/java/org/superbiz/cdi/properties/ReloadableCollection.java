@@ -0,0 +1,25 @@
+package org.superbiz.cdi.properties;
+
+import com.mongodb.DBCollection;
+
+/**
+ * A collection resolved again on every +get()+, so it follows the client of +MongoDbFactory+ when a reload of the
+ * settings replaces it. A +DBCollection+ injected directly stays on the client it was resolved with.
+ */
+public abstract class ReloadableCollection {
+
+    public abstract DBCollection get();
+
+    /**
+     * A handle on a collection that is never replaced.
+     */
+    public static ReloadableCollection of(final DBCollection collection) {
+        return new ReloadableCollection() {
+            @Override
+            public DBCollection get() {
+                return collection;
+            }
+        };
+    }
+
+}
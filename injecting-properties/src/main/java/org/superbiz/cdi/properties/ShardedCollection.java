@@ -0,0 +1,212 @@
+package org.superbiz.cdi.properties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.bson.types.ObjectId;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.WriteResult;
+
+/**
+ * Routing facade over the same collection living on several _MongoDB_ deployments.
+ * 
+ * Operations on a single value of the shard key go to the shard owning it, queries go to every shard in parallel and
+ * their results are merged. Shards are resolved through +ReloadableCollection+ on every operation, so the facade keeps
+ * working when their clients are replaced.
+ */
+public class ShardedCollection {
+
+    private final List<ReloadableCollection> shards;
+
+    private final ConsistentHashRing<ReloadableCollection> ring;
+
+    private final String shardKey;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param shards the collection of every shard by a stable name, like its endpoint
+     */
+    public ShardedCollection(Map<String, ReloadableCollection> shards, String shardKey, int virtualNodes,
+            ExecutorService executor) {
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards.values()));
+        this.ring = new ConsistentHashRing<>(shards, virtualNodes);
+        this.shardKey = shardKey;
+        this.executor = executor;
+    }
+
+    public List<DBCollection> getShards() {
+        List<DBCollection> collections = new ArrayList<>();
+        for (ReloadableCollection shard : shards) {
+            collections.add(shard.get());
+        }
+        return collections;
+    }
+
+    public String getShardKey() {
+        return shardKey;
+    }
+
+    /**
+     * The shard owning documents whose shard key is +value+.
+     */
+    public DBCollection getShard(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing value for shard key " + shardKey);
+        }
+        return (shards.size() == 1 ? shards.get(0) : ring.get(value.toString())).get();
+    }
+
+    public WriteResult insert(DBObject document) {
+        return shardOf(document).insert(document);
+    }
+
+    /**
+     * Inserts +documents+ with one insert per shard, the shards are written in parallel.
+     */
+    public List<WriteResult> insert(List<? extends DBObject> documents) {
+        Map<DBCollection, List<DBObject>> byShard = new IdentityHashMap<>();
+        for (DBObject document : documents) {
+            DBCollection shard = shardOf(document);
+            List<DBObject> batch = byShard.get(shard);
+            if (batch == null) {
+                batch = new ArrayList<>();
+                byShard.put(shard, batch);
+            }
+            batch.add(document);
+        }
+
+        Map<DBCollection, Callable<WriteResult>> inserts = new LinkedHashMap<>();
+        for (final Map.Entry<DBCollection, List<DBObject>> batch : byShard.entrySet()) {
+            inserts.put(batch.getKey(), new Callable<WriteResult>() {
+                @Override
+                public WriteResult call() {
+                    return batch.getKey().insert(batch.getValue());
+                }
+            });
+        }
+        return gather(inserts);
+    }
+
+    public WriteResult save(DBObject document) {
+        return shardOf(document).save(document);
+    }
+
+    public DBObject findOne(Object value) {
+        return getShard(value).findOne(new BasicDBObject(shardKey, value));
+    }
+
+    public WriteResult update(Object value, DBObject update) {
+        return getShard(value).update(new BasicDBObject(shardKey, value), update);
+    }
+
+    public WriteResult remove(Object value) {
+        return getShard(value).remove(new BasicDBObject(shardKey, value));
+    }
+
+    /**
+     * Documents matching +query+ on every shard, in no particular order.
+     */
+    public List<DBObject> find(final DBObject query, final DBObject projection) {
+        Map<DBCollection, Callable<List<DBObject>>> finds = new LinkedHashMap<>();
+        for (final DBCollection shard : getShards()) {
+            finds.put(shard, new Callable<List<DBObject>>() {
+                @Override
+                public List<DBObject> call() {
+                    try (DBCursor cursor = shard.find(query, projection)) {
+                        return cursor.toArray();
+                    }
+                }
+            });
+        }
+
+        List<DBObject> documents = new ArrayList<>();
+        for (List<DBObject> shardDocuments : gather(finds)) {
+            documents.addAll(shardDocuments);
+        }
+        return documents;
+    }
+
+    public List<DBObject> find(DBObject query) {
+        return find(query, null);
+    }
+
+    public long count(final DBObject query) {
+        Map<DBCollection, Callable<Long>> counts = new LinkedHashMap<>();
+        for (final DBCollection shard : getShards()) {
+            counts.put(shard, new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return shard.count(query);
+                }
+            });
+        }
+
+        long count = 0;
+        for (Long shardCount : gather(counts)) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    // the shard key of a new document without one is _id, let it be generated here so it can be routed
+    private DBCollection shardOf(DBObject document) {
+        Object value = document.get(shardKey);
+        if (value == null && "_id".equals(shardKey)) {
+            value = new ObjectId();
+            document.put("_id", value);
+        }
+        return getShard(value);
+    }
+
+    private <V> List<V> gather(Map<DBCollection, Callable<V>> tasks) {
+        if (tasks.size() == 1) {
+            try {
+                return Collections.singletonList(tasks.values().iterator().next().call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new MongoException(e.getMessage(), e);
+            }
+        }
+
+        List<Future<V>> futures = new ArrayList<>();
+        for (Callable<V> task : tasks.values()) {
+            futures.add(executor.submit(task));
+        }
+
+        List<V> results = new ArrayList<>();
+        try {
+            for (Future<V> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MongoException("Interrupted waiting for the shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new MongoException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            for (Future<V> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.superbiz.cdi.properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 10000;
+
+    @Test
+    public void should_spread_keys_evenly() {
+
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes("a:27017", "b:27017", "c:27017"), 160);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            String node = ring.get("recipe-" + i);
+            counts.put(node, counts.containsKey(node) ? counts.get(node) + 1 : 1);
+        }
+
+        assertThat(counts.size(), is(3));
+        for (int count : counts.values()) {
+            assertTrue("uneven shard " + counts, count > KEYS / 3 * 0.8 && count < KEYS / 3 * 1.2);
+        }
+
+    }
+
+    @Test
+    public void should_only_move_keys_to_an_added_node() {
+
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes("a:27017", "b:27017", "c:27017"), 160);
+        Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            before.put("recipe-" + i, ring.get("recipe-" + i));
+        }
+
+        ring.add("d:27017", "d:27017");
+
+        int moved = 0;
+        for (Map.Entry<String, String> key : before.entrySet()) {
+            String node = ring.get(key.getKey());
+            if (!node.equals(key.getValue())) {
+                assertThat(node, is("d:27017"));
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2);
+
+    }
+
+    @Test
+    public void should_not_depend_on_the_order_of_the_nodes() {
+
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes("a:27017", "b:27017", "c:27017"), 160);
+        ConsistentHashRing<String> reordered = new ConsistentHashRing<>(nodes("c:27017", "a:27017", "b:27017"), 160);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(reordered.get("recipe-" + i), is(ring.get("recipe-" + i)));
+        }
+
+    }
+
+    private static Map<String, String> nodes(String... names) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (String name : names) {
+            nodes.put(name, name);
+        }
+        return nodes;
+    }
+
+}
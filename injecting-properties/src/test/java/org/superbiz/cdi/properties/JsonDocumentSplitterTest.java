@@ -0,0 +1,73 @@
+package org.superbiz.cdi.properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JsonDocumentSplitterTest {
+
+    private static final String DUMP = "[{\"name\": \"brownies\", \"tags\": [\"cake\", \"chocolate\"]},\n"
+            + " {\"name\": \"curly {braces}\", \"quote\": \"say \\\"hi\\\" \\\\\"},\n"
+            + " {\"name\": \"soup\", \"steps\": {\"first\": \"boil\"}}]";
+
+    @Test
+    public void should_split_documents_of_a_top_level_array() {
+
+        List<String> documents = new ArrayList<>();
+        JsonDocumentSplitter splitter = new JsonDocumentSplitter();
+
+        assertThat(splitter.feed(CharBuffer.wrap(DUMP), documents), is(3));
+        splitter.finish();
+
+        assertThat(documents, is(Arrays.asList(
+                "{\"name\": \"brownies\", \"tags\": [\"cake\", \"chocolate\"]}",
+                "{\"name\": \"curly {braces}\", \"quote\": \"say \\\"hi\\\" \\\\\"}",
+                "{\"name\": \"soup\", \"steps\": {\"first\": \"boil\"}}")));
+
+    }
+
+    @Test
+    public void should_give_the_same_documents_whatever_the_chunk_size() {
+
+        List<String> expected = new ArrayList<>();
+        new JsonDocumentSplitter().feed(CharBuffer.wrap(DUMP), expected);
+
+        for (int chunk = 1; chunk < DUMP.length(); chunk++) {
+            List<String> documents = new ArrayList<>();
+            JsonDocumentSplitter splitter = new JsonDocumentSplitter();
+            for (int start = 0; start < DUMP.length(); start += chunk) {
+                splitter.feed(CharBuffer.wrap(DUMP, start, Math.min(start + chunk, DUMP.length())), documents);
+            }
+            splitter.finish();
+
+            assertThat("chunk of " + chunk, documents, is(expected));
+        }
+
+    }
+
+    @Test
+    public void should_split_one_document_per_line() {
+
+        List<String> documents = new ArrayList<>();
+        new JsonDocumentSplitter().feed(CharBuffer.wrap("{\"a\": 1}\n{\"b\": 2}\r\n"), documents);
+
+        assertThat(documents, is(Arrays.asList("{\"a\": 1}", "{\"b\": 2}")));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_a_truncated_document() {
+
+        JsonDocumentSplitter splitter = new JsonDocumentSplitter();
+        splitter.feed(CharBuffer.wrap("{\"a\": {\"b\": 1}"), new ArrayList<String>());
+        splitter.finish();
+
+    }
+
+}
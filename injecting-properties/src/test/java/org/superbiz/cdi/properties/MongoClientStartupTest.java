@@ -0,0 +1,141 @@
+package org.superbiz.cdi.properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ServerAddress;
+
+public class MongoClientStartupTest {
+
+    private MongoStubServer server;
+
+    private MongoClientStartup startup;
+
+    @After
+    public void stop() {
+        if (startup != null) {
+            startup.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void should_warm_a_lazily_created_client() throws Exception {
+
+        server = new MongoStubServer();
+        startup = startup(server.getPort());
+        startup.start("lazy");
+
+        assertFalse(startup.isCreated());
+        assertFalse(startup.isReady());
+
+        startup.get();
+
+        assertTrue(startup.isCreated());
+        awaitReady();
+        assertTrue(server.getPings() >= 2);
+
+    }
+
+    @Test
+    public void should_become_ready_in_the_background() throws Exception {
+
+        server = new MongoStubServer();
+        startup = startup(server.getPort());
+        startup.start("background");
+
+        awaitReady();
+        assertTrue(startup.isCreated());
+
+    }
+
+    @Test
+    public void should_become_ready_when_the_server_comes_up_after_a_failed_warm_up() throws Exception {
+
+        int port;
+        try (ServerSocket reserved = new ServerSocket(0)) {
+            port = reserved.getLocalPort();
+        }
+        startup = startup(port);
+        startup.start("eager");
+
+        assertTrue(startup.isCreated());
+        assertFalse(startup.isReady());
+
+        server = new MongoStubServer(port);
+
+        awaitReady();
+
+    }
+
+    @Test
+    public void should_be_ready_once_created_when_no_connections_are_warmed() throws Exception {
+
+        server = new MongoStubServer();
+        startup = new MongoClientStartup(factory(server.getPort()), 0, 1000, 100);
+        startup.start("lazy");
+
+        assertFalse(startup.isReady());
+        startup.get();
+        assertThat(startup.isReady(), is(true));
+
+    }
+
+    @Test
+    public void should_not_be_ready_until_a_replacement_client_is_warmed() throws Exception {
+
+        server = new MongoStubServer();
+        startup = startup(server.getPort());
+        startup.start("eager");
+        awaitReady();
+
+        int port;
+        try (ServerSocket reserved = new ServerSocket(0)) {
+            port = reserved.getLocalPort();
+        }
+        startup.replace(factory(port).create()).close();
+
+        assertFalse(startup.isReady());
+
+    }
+
+    private static MongoClientStartup startup(int port) {
+        return new MongoClientStartup(factory(port), 2, 1000, 100);
+    }
+
+    private static MongoClientStartup.ClientFactory factory(final int port) {
+        return new MongoClientStartup.ClientFactory() {
+            @Override
+            public MongoClient create() {
+                try {
+                    return new MongoClient(new ServerAddress("localhost", port),
+                            MongoClientOptions.builder().connectTimeout(500).maxWaitTime(500).build());
+                } catch (UnknownHostException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            }
+        };
+    }
+
+    private void awaitReady() throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!startup.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(startup.isReady());
+    }
+
+}
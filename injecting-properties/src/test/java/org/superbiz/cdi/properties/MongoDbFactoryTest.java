@@ -1,8 +1,15 @@
 package org.superbiz.cdi.properties;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Properties;
+
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.apache.deltaspike.core.api.config.PropertyFileConfig;
@@ -17,6 +24,13 @@ import org.jboss.shrinkwrap.resolver.api.maven.Maven;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.Mongo;
+import com.mongodb.MongoClient;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+
 /**
  * = Injecting Properties
  * 
@@ -65,6 +79,33 @@ import org.junit.runner.RunWith;
  * port = 27017
  * ----
  * 
+ * Connection pool settings (+connectionsPerHost+, +threadsAllowedToBlockForConnectionMultiplier+, +maxWaitTime+, +connectTimeout+ and +socketTimeout+)
+ * can be set in the same file. When one is missing the +defaultValue+ of its +ConfigProperty+ is used.
+ * 
+ * To spread reads over a replica set, list its members in +hosts+ (for example +hosts = db1:27017,db2:27017,db3:27017+) and
+ * set a read preference, either for the whole client with +readPreference+ or per collection with +recipes.readPreference+.
+ * 
+ * The client is created in +@PostConstruct+ by default. With +startupMode = lazy+ it is created on first use, and with
+ * +startupMode = background+ it is created on another thread that also opens +warmConnections+ pooled connections, so
+ * the application starts without waiting for _MongoDB_. +isReady()+ tells when the client is there and warmed.
+ * 
+ * Settings can also live in an external file named by the +mongodb.config+ system property. +MongoDbSettingsSource+ watches it and
+ * publishes a new snapshot whenever it changes. When pool, timeout or read preference settings change, +MongoDbFactory+ replaces its
+ * client without a redeploy, and a setting removed from the file goes back to its default. Inject a +ReloadableCollection+ instead
+ * of a +DBCollection+ to follow the new client: the previous one is closed +retiredCloseDelay+ milliseconds (60000 by default) after
+ * the reload. Invalid settings are logged and leave the current client in place.
+ * 
+ * To grow past one deployment, list several endpoints in +shards+. Recipes are then spread over them by consistent hashing on
+ * +shardKey+ (+_id+ by default). Injecting +@RecipesCollection ShardedCollection+ gives a facade that sends single key operations
+ * to the owning shard, and sends queries to every shard in parallel.
+ * 
+ * Large JSON dumps can be loaded with +RecipesImporter+. It reads the file through a channel, cuts it into documents as it goes,
+ * and hands batches to +import.writers+ threads through a bounded queue. With +shards+ each batch is split between them.
+ * +getProgress()+ reports bytes, documents and throughput.
+ * 
+ * Any other collection can be injected with +@MongoCollection(name = "ingredients", readPreference = "nearest")+, the handle
+ * is resolved and configured once and then shared by every injection point, which must all declare the same settings.
+ * 
  * And then your _POJO_ may look like:
  * 
  * include::src/main/java/org/superbiz/cdi/properties/MongoDbFactory.java[]
@@ -88,7 +129,10 @@ import org.junit.runner.RunWith;
 public class MongoDbFactoryTest {
 
     private static final String MONGODB_PROPERTIES = "host = localhost" + System.getProperty("line.separator") + 
-    		"port = 27017";
+    		"port = 27017" + System.getProperty("line.separator") +
+    		"connectionsPerHost = 20" + System.getProperty("line.separator") +
+    		"maxWaitTime = 2000" + System.getProperty("line.separator") +
+    		"recipes.readPreference = secondaryPreferred";
     
     @Deployment @OverProtocol("Servlet 3.0")
     public static JavaArchive createDeployment() {
@@ -118,12 +162,101 @@ public class MongoDbFactoryTest {
     @Inject
     MongoDbFactory mongoDbFactory;
     
+    @Inject
+    @MongoCollection(name = "ingredients", writeConcern = "MAJORITY", readPreference = "nearest")
+    Instance<DBCollection> ingredients;
+    
+    @Inject
+    @RecipesCollection
+    Instance<ReloadableCollection> reloadableRecipes;
+    
     @Test
     public void should_load_mongodb__configuration_from_properties_file() {
        
        assertThat(mongoDbFactory.getHost(), is("localhost"));
        assertThat(mongoDbFactory.getPort(), is(27017));
+       assertThat(mongoDbFactory.isReady(), is(true)); // eager startup without warm connections
+        
+    }
+    
+    @Test
+    public void should_apply_pool_options_from_properties_file() {
+        
+       assertThat(mongoDbFactory.getOptions().getConnectionsPerHost(), is(20));
+       assertThat(mongoDbFactory.getOptions().getMaxWaitTime(), is(2000));
+       assertThat(mongoDbFactory.getOptions().getThreadsAllowedToBlockForConnectionMultiplier(), is(5)); // default value
+       
+       MongoPoolStatistics statistics = mongoDbFactory.getPoolStatistics().get(0);
+       assertThat(statistics.getMaxSize(), is(20));
+       assertThat(statistics.getInUse(), is(0));
+       assertThat(statistics.getLongestInUse(), is(0L));
+        
+    }
+    
+    @Test
+    public void should_route_recipes_reads_with_their_own_read_preference() {
         
+       assertThat(mongoDbFactory.getSeeds().size(), is(1)); // no hosts property, host and port are used
+       assertThat(mongoDbFactory.getOptions().getReadPreference(), is(ReadPreference.primary()));
+       DBCollection recipes = mongoDbFactory.getRecipeCollection();
+       assertThat(recipes.getReadPreference(), is(ReadPreference.secondaryPreferred()));
+       
+       ShardedCollection sharded = mongoDbFactory.getShardedRecipeCollection(); // no shards property, a single shard
+       assertThat(sharded.getShards().size(), is(1));
+       assertThat(sharded.getShard("any").getReadPreference(), is(ReadPreference.secondaryPreferred()));
+        
+    }
+    
+    @Test
+    public void should_resolve_and_configure_collections_once() {
+        
+       DBCollection collection = ingredients.get();
+       assertThat(collection.getName(), is("ingredients"));
+       assertThat(collection.getWriteConcern(), is(WriteConcern.MAJORITY));
+       assertThat(collection.getReadPreference(), is(ReadPreference.nearest()));
+       assertThat(ingredients.get(), is(sameInstance(collection)));
+        
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_a_collection_resolved_with_other_settings() {
+        
+       ingredients.get();
+       mongoDbFactory.getCollection("test", "ingredients", "ACKNOWLEDGED", "nearest", BasicDBObject.class);
+        
+    }
+    
+    @Test
+    public void should_follow_the_client_replaced_by_a_reload() throws IOException {
+        
+       ReloadableCollection recipes = reloadableRecipes.get();
+       MongoClient before = mongoDbFactory.getMongo();
+       assertThat(recipes.get().getDB().getMongo(), is(sameInstance((Mongo) before)));
+       
+       mongoDbFactory.apply(settings("socketTimeout = 3000"));
+       MongoClient after = mongoDbFactory.getMongo();
+       assertThat(after, is(not(sameInstance(before))));
+       assertThat(recipes.get().getDB().getMongo(), is(sameInstance((Mongo) after)));
+       assertThat(recipes.get().getReadPreference(), is(ReadPreference.secondaryPreferred()));
+       assertThat(mongoDbFactory.getShardedRecipeCollection().getShard("any").getDB().getMongo(), is(sameInstance((Mongo) after)));
+       
+       mongoDbFactory.apply(settings("socketTimeout = 5000\nreadPreference = nowhere")); // rejected as a whole
+       assertThat(mongoDbFactory.getMongo(), is(sameInstance(after)));
+       assertThat(mongoDbFactory.getOptions().getSocketTimeout(), is(3000));
+       
+       mongoDbFactory.apply(settings("socketTimeout = 3000\nmaxWaitTime = 2000")); // same options, nothing to replace
+       assertThat(mongoDbFactory.getMongo(), is(sameInstance(after)));
+       
+       mongoDbFactory.apply(settings("")); // removed from the file, back to the value it started with
+       assertThat(mongoDbFactory.getOptions().getSocketTimeout(), is(0));
+       assertThat(mongoDbFactory.getOptions().getConnectionsPerHost(), is(20));
+        
+    }
+    
+    private static MongoDbSettings settings(String properties) throws IOException {
+        Properties source = new Properties();
+        source.load(new StringReader(properties));
+        return new MongoDbSettings(source);
     }
     
 }
@@ -0,0 +1,83 @@
+package org.superbiz.cdi.properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MongoDbSettingsSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void should_publish_new_settings_when_the_file_changes() throws Exception {
+
+        Path file = folder.newFile("mongodb.properties").toPath();
+        write(file, "host = localhost\nconnectionsPerHost = 20\n");
+
+        MongoDbSettingsSource source = new MongoDbSettingsSource(file);
+        try {
+            assertThat(source.getPropertyValue("host"), is("localhost"));
+            assertThat(source.getSettings().getConnectionsPerHost(), is(20));
+            assertThat(source.getSettings().getSocketTimeout(), is(nullValue()));
+
+            final CountDownLatch changed = new CountDownLatch(1);
+            final AtomicReference<MongoDbSettings> published = new AtomicReference<>();
+            source.addListener(new MongoDbSettingsListener() {
+                @Override
+                public void settingsChanged(MongoDbSettings previous, MongoDbSettings current) {
+                    if (current.isClientChanged(previous)) {
+                        published.set(current);
+                        changed.countDown();
+                    }
+                }
+            });
+
+            write(file, "host = localhost\nconnectionsPerHost = 50\nsocketTimeout = 3000\n");
+
+            // some WatchService implementations poll, give them time
+            assertTrue(changed.await(30, TimeUnit.SECONDS));
+            assertThat(published.get().getConnectionsPerHost(), is(50));
+            assertThat(source.getPropertyValue("socketTimeout"), is("3000"));
+        } finally {
+            source.close();
+        }
+
+    }
+
+    @Test
+    public void should_keep_previous_settings_when_the_file_is_invalid() throws Exception {
+
+        Path file = folder.newFile("mongodb.properties").toPath();
+        write(file, "connectionsPerHost = 20\n");
+
+        MongoDbSettingsSource source = new MongoDbSettingsSource(file);
+        try {
+            write(file, "connectionsPerHost = many\n");
+            source.reload();
+
+            assertThat(source.getSettings().getConnectionsPerHost(), is(20));
+        } finally {
+            source.close();
+        }
+
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+}
@@ -0,0 +1,300 @@
+package org.superbiz.cdi.properties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.BSON;
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.ServerAddress;
+
+/**
+ * A stand-in for a +mongod+ on +localhost+, enough of the wire protocol for the 2.x driver to insert, find, count,
+ * remove and ping. Documents live in memory and queries only match top level fields by equality.
+ */
+public class MongoStubServer {
+
+    private static final int OP_REPLY = 1;
+    private static final int OP_UPDATE = 2001;
+    private static final int OP_INSERT = 2002;
+    private static final int OP_QUERY = 2004;
+    private static final int OP_DELETE = 2006;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, List<BSONObject>> collections = new HashMap<>();
+    private final AtomicInteger pings = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * A stub on a free port.
+     */
+    public MongoStubServer() throws IOException {
+        this(0);
+    }
+
+    public MongoStubServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName("localhost"));
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public ServerAddress getAddress() {
+        try {
+            return new ServerAddress("localhost", getPort());
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Documents stored in +namespace+, +db.collection+.
+     */
+    public List<BSONObject> getDocuments(String namespace) {
+        synchronized (collections) {
+            List<BSONObject> documents = collections.get(namespace);
+            return documents == null ? Collections.<BSONObject> emptyList() : new ArrayList<>(documents);
+        }
+    }
+
+    public int getPings() {
+        return pings.get();
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (IOException e) {
+                return; // stopped
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket) {
+            DataInputStream in = new DataInputStream(connection.getInputStream());
+            OutputStream out = connection.getOutputStream();
+            // the last write of a connection, what getlasterror reports
+            int lastWritten = 0;
+            while (true) {
+                byte[] header = new byte[16];
+                in.readFully(header);
+                ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+                int length = headerBuffer.getInt();
+                int requestId = headerBuffer.getInt();
+                headerBuffer.getInt(); // responseTo
+                int opCode = headerBuffer.getInt();
+
+                byte[] body = new byte[length - 16];
+                in.readFully(body);
+                InputStream message = new ByteArrayInputStream(body);
+
+                switch (opCode) {
+                case OP_QUERY:
+                    readInt(message); // flags
+                    String namespace = readCString(message);
+                    readInt(message); // numberToSkip
+                    readInt(message); // numberToReturn
+                    BSONObject query = new BasicBSONDecoder().readObject(message);
+                    List<BSONObject> results = namespace.endsWith(".$cmd")
+                            ? Collections.singletonList(command(namespace, query, lastWritten))
+                            : find(namespace, query);
+                    reply(out, requestId, results);
+                    break;
+                case OP_INSERT:
+                    readInt(message); // flags
+                    String insertInto = readCString(message);
+                    List<BSONObject> inserted = new ArrayList<>();
+                    while (message.available() > 0) {
+                        inserted.add(new BasicBSONDecoder().readObject(message));
+                    }
+                    synchronized (collections) {
+                        collection(insertInto).addAll(inserted);
+                    }
+                    lastWritten = inserted.size();
+                    break;
+                case OP_DELETE:
+                    readInt(message); // reserved
+                    String deleteFrom = readCString(message);
+                    readInt(message); // flags
+                    lastWritten = remove(deleteFrom, new BasicBSONDecoder().readObject(message));
+                    break;
+                case OP_UPDATE:
+                    lastWritten = 0; // not needed by the tests
+                    break;
+                default:
+                    // kill cursors and anything else needs no reply
+                }
+            }
+        } catch (EOFException e) {
+            // the client closed the connection
+        } catch (IOException e) {
+            // stopped
+        }
+    }
+
+    private BSONObject command(String namespace, BSONObject command, int lastWritten) {
+        String name = command.keySet().iterator().next();
+        BasicDBObject result = new BasicDBObject("ok", 1.0);
+        switch (name.toLowerCase()) {
+        case "ping":
+            pings.incrementAndGet();
+            break;
+        case "ismaster":
+            result.append("ismaster", true).append("maxBsonObjectSize", 16 * 1024 * 1024)
+                    .append("maxMessageSizeBytes", 48000000);
+            break;
+        case "getlasterror":
+            result.append("n", lastWritten).append("err", null);
+            break;
+        case "count":
+            String database = namespace.substring(0, namespace.indexOf('.'));
+            BSONObject query = (BSONObject) command.get("query");
+            result.append("n", (double) find(database + "." + command.get(name), query).size());
+            break;
+        default:
+            // anything else succeeds without doing anything
+        }
+        return result;
+    }
+
+    private List<BSONObject> find(String namespace, BSONObject query) {
+        if (query != null && query.containsField("$query")) {
+            query = (BSONObject) query.get("$query");
+        }
+        List<BSONObject> found = new ArrayList<>();
+        for (BSONObject document : getDocuments(namespace)) {
+            if (matches(document, query)) {
+                found.add(document);
+            }
+        }
+        return found;
+    }
+
+    private int remove(String namespace, BSONObject query) {
+        int removed = 0;
+        synchronized (collections) {
+            for (Iterator<BSONObject> documents = collection(namespace).iterator(); documents.hasNext();) {
+                if (matches(documents.next(), query)) {
+                    documents.remove();
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private static boolean matches(BSONObject document, BSONObject query) {
+        if (query == null) {
+            return true;
+        }
+        for (String field : query.keySet()) {
+            Object expected = query.get(field);
+            Object actual = document.get(field);
+            if (expected == null ? actual != null : !expected.equals(actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<BSONObject> collection(String namespace) {
+        List<BSONObject> documents = collections.get(namespace);
+        if (documents == null) {
+            documents = new ArrayList<>();
+            collections.put(namespace, documents);
+        }
+        return documents;
+    }
+
+    // every result fits in the first batch, a cursor id of 0 tells the driver there is nothing more to get
+    private static void reply(OutputStream out, int requestId, List<BSONObject> documents) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        for (BSONObject document : documents) {
+            encoded.write(BSON.encode(document));
+        }
+
+        ByteBuffer reply = ByteBuffer.allocate(36 + encoded.size()).order(ByteOrder.LITTLE_ENDIAN);
+        reply.putInt(36 + encoded.size());
+        reply.putInt(0); // requestID
+        reply.putInt(requestId); // responseTo
+        reply.putInt(OP_REPLY);
+        reply.putInt(0); // responseFlags
+        reply.putLong(0); // cursorID
+        reply.putInt(0); // startingFrom
+        reply.putInt(documents.size());
+        reply.put(encoded.toByteArray());
+
+        synchronized (out) {
+            out.write(reply.array());
+            out.flush();
+        }
+    }
+
+    private static int readInt(InputStream in) throws IOException {
+        byte[] bytes = new byte[4];
+        new DataInputStream(in).readFully(bytes);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    private static String readCString(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int b = in.read(); b > 0; b = in.read()) {
+            bytes.write(b);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
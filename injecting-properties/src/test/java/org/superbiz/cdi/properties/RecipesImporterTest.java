@@ -0,0 +1,108 @@
+package org.superbiz.cdi.properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.inject.Inject;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.container.test.api.OverProtocol;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.mongodb.DBCollection;
+
+@RunWith(Arquillian.class)
+public class RecipesImporterTest {
+
+    private static final int RECIPES = 50;
+
+    // started with the deployment, which needs their ports
+    private static MongoStubServer server;
+    private static MongoStubServer firstShard;
+    private static MongoStubServer secondShard;
+
+    @Deployment @OverProtocol("Servlet 3.0")
+    public static JavaArchive createDeployment() throws IOException {
+
+        server = new MongoStubServer();
+        firstShard = new MongoStubServer();
+        secondShard = new MongoStubServer();
+
+        String properties = "host = localhost\n" +
+                "port = " + server.getPort() + "\n" +
+                "shards = localhost:" + firstShard.getPort() + ",localhost:" + secondShard.getPort() + "\n" +
+                "import.writers = 2\n" +
+                "import.batchSize = 10\n";
+
+        JavaArchive application = ShrinkWrap.create(JavaArchive.class)
+                         .addPackage(MongoDbFactory.class.getPackage())
+                         .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml")
+                         .addAsResource(new StringAsset(properties), "mongodb.properties");
+
+        for (JavaArchive deltaSpike : Maven.resolver().loadPomFromFile("pom.xml")
+                                        .resolve("org.apache.deltaspike.core:deltaspike-core-impl")
+                                        .withTransitivity().as(JavaArchive.class)) {
+            application.merge(deltaSpike);
+        }
+
+        return application;
+
+    }
+
+    @AfterClass
+    public static void stop() {
+        for (MongoStubServer stub : new MongoStubServer[] {server, firstShard, secondShard}) {
+            if (stub != null) {
+                stub.stop();
+            }
+        }
+    }
+
+    @Inject
+    RecipesImporter recipesImporter;
+
+    @Inject
+    MongoDbFactory mongoDbFactory;
+
+    @Test
+    public void should_spread_imported_recipes_over_the_shards() throws IOException {
+
+        StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < RECIPES; i++) {
+            dump.append("{\"name\": \"recipe ").append(i).append("\"}\n");
+        }
+        Path file = Files.createTempFile("recipes", ".json");
+        try {
+            Files.write(file, dump.toString().getBytes(StandardCharsets.UTF_8));
+
+            assertThat(recipesImporter.importRecipes(file).getDocumentsInserted(), is((long) RECIPES));
+        } finally {
+            Files.delete(file);
+        }
+
+        long imported = 0;
+        for (DBCollection shard : mongoDbFactory.getShardedRecipeCollection().getShards()) {
+            long count = shard.count();
+            assertTrue("empty shard " + shard.getDB().getMongo().getAddress(), count > 0);
+            imported += count;
+        }
+        assertThat(imported, is((long) RECIPES));
+        assertThat(mongoDbFactory.getRecipeCollection().count(), is(0L)); // nothing went to the unsharded client
+
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.superbiz.cdi.properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bson.BSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+
+public class ShardedCollectionTest {
+
+    private static final String RECIPES = "test.recipes";
+
+    private final List<MongoStubServer> servers = new ArrayList<>();
+
+    private final List<MongoClient> clients = new ArrayList<>();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    private ShardedCollection recipes;
+
+    @Before
+    public void start() throws Exception {
+        Map<String, ReloadableCollection> shards = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            MongoStubServer server = new MongoStubServer();
+            MongoClient client = new MongoClient(server.getAddress());
+            servers.add(server);
+            clients.add(client);
+            shards.put(server.getAddress().toString(), ReloadableCollection.of(client.getDB("test").getCollection("recipes")));
+        }
+        recipes = new ShardedCollection(shards, "_id", 160, executor);
+    }
+
+    @After
+    public void stop() {
+        executor.shutdownNow();
+        for (MongoClient client : clients) {
+            client.close();
+        }
+        for (MongoStubServer server : servers) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void should_route_single_key_operations_to_the_owning_shard() {
+
+        for (int i = 0; i < 30; i++) {
+            recipes.insert(new BasicDBObject("_id", "recipe-" + i).append("name", "Recipe " + i));
+        }
+
+        for (int i = 0; i < 30; i++) {
+            String id = "recipe-" + i;
+            MongoStubServer owner = serverOf(id);
+            for (MongoStubServer server : servers) {
+                assertThat(id + " on " + server.getPort(), contains(server, id), is(server == owner));
+            }
+            assertThat(recipes.findOne(id).get("name"), is((Object) ("Recipe " + i)));
+        }
+
+        recipes.remove("recipe-7");
+        assertThat(recipes.findOne("recipe-7"), is(nullValue()));
+        assertThat(recipes.count(new BasicDBObject()), is(29L));
+
+    }
+
+    @Test
+    public void should_insert_a_batch_with_one_insert_per_shard() {
+
+        List<DBObject> batch = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            batch.add(new BasicDBObject("name", "Recipe " + i)); // _id is generated to route them
+        }
+
+        assertThat(recipes.insert(batch).size(), is(3));
+
+        int stored = 0;
+        for (MongoStubServer server : servers) {
+            for (BSONObject document : server.getDocuments(RECIPES)) {
+                assertThat(serverOf(document.get("_id")), is(server));
+                stored++;
+            }
+        }
+        assertThat(stored, is(30));
+        for (DBObject document : batch) {
+            assertThat(document.get("_id"), is(notNullValue()));
+        }
+
+    }
+
+    @Test
+    public void should_gather_queries_from_every_shard() {
+
+        for (int i = 0; i < 30; i++) {
+            recipes.insert(new BasicDBObject("_id", "recipe-" + i).append("cuisine", i % 2 == 0 ? "italian" : "thai"));
+        }
+
+        List<DBObject> italian = recipes.find(new BasicDBObject("cuisine", "italian"));
+        assertThat(italian.size(), is(15));
+        for (DBObject recipe : italian) {
+            assertThat(recipe.get("cuisine"), is((Object) "italian"));
+        }
+        assertThat(recipes.count(new BasicDBObject("cuisine", "thai")), is(15L));
+
+        for (MongoStubServer server : servers) {
+            assertThat("shard " + server.getPort() + " is empty", server.getDocuments(RECIPES).isEmpty(), is(false));
+        }
+
+    }
+
+    private MongoStubServer serverOf(Object value) {
+        for (int i = 0; i < servers.size(); i++) {
+            if (recipes.getShard(value).getDB().getMongo() == clients.get(i)) {
+                return servers.get(i);
+            }
+        }
+        throw new AssertionError("No shard for " + value);
+    }
+
+    private static boolean contains(MongoStubServer server, Object id) {
+        for (BSONObject document : server.getDocuments(RECIPES)) {
+            if (id.equals(document.get("_id"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
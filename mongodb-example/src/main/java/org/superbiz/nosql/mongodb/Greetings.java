@@ -2,12 +2,17 @@ package org.superbiz.nosql.mongodb;
 
 import javax.enterprise.inject.Model;
 
+import org.bson.types.ObjectId;
+
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 
 @Model
 public class Greetings {
 
+    private ObjectId id;
+
+    @Indexed
     private String message;
 
     public Greetings() {
@@ -19,6 +24,14 @@ public class Greetings {
         this.message = message;
     }
 
+    public ObjectId getId() {
+        return id;
+    }
+
+    public void setId(ObjectId id) {
+        this.id = id;
+    }
+
     public String getMessage() {
         return message;
     }
@@ -30,14 +43,22 @@ public class Greetings {
     public BasicDBObject toDBObject() {
         BasicDBObject doc = new BasicDBObject();
 
+        if (this.id != null) {
+            doc.put("_id", this.id);
+        }
         doc.put("message", this.message);
 
         return doc;
     }
 
     public static Greetings fromDBObject(DBObject doc) {
+        if (doc instanceof GreetingsDocument) {
+            return ((GreetingsDocument) doc).getGreetings();
+        }
+
         Greetings greetings = new Greetings();
 
+        greetings.id = (ObjectId) doc.get("_id");
         greetings.message = (String) doc.get("message");
         return greetings;
     }
@@ -0,0 +1,134 @@
+package org.superbiz.nosql.mongodb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+
+/**
+ * Size bounded, least recently used cache of greetings query results shared by all pooled
+ * {@link GreetingsSessionBean} instances. Entries expire +greetingsCacheTtl+ milliseconds after being loaded and the
+ * whole cache is invalidated on every write. A result loaded before an invalidation is never stored after it, so a
+ * read racing with a write cannot put stale data back.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class GreetingsCache {
+
+	static final int DEFAULT_MAX_ENTRIES = 128;
+	static final int DEFAULT_MAX_RESULT_SIZE = 10000;
+	static final long DEFAULT_TTL = 30000;
+
+	@Resource(name = "greetingsCacheMaxEntries")
+	private Integer maxEntries = DEFAULT_MAX_ENTRIES;
+
+	@Resource(name = "greetingsCacheMaxResultSize")
+	private Integer maxResultSize = DEFAULT_MAX_RESULT_SIZE;
+
+	@Resource(name = "greetingsCacheTtl")
+	private Long ttl = DEFAULT_TTL;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong generation = new AtomicLong();
+
+	private final Map<String, CachedGreetings> entries = new LinkedHashMap<String, CachedGreetings>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedGreetings> eldest) {
+			if (size() > maxEntries) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Returns a copy of the cached result or +null+ on a miss.
+	 */
+	public List<Greetings> get(String key) {
+		CachedGreetings entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+				entries.remove(key);
+				evictions.incrementAndGet();
+				entry = null;
+			}
+		}
+
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return new ArrayList<>(entry.greetings);
+	}
+
+	/**
+	 * Current generation, to be read before loading a result that is going to be passed to {@link #put}.
+	 */
+	public long generation() {
+		return generation.get();
+	}
+
+	public void put(String key, long loadedAt, List<Greetings> greetings) {
+		if (greetings.size() > maxResultSize) {
+			return;
+		}
+
+		CachedGreetings entry = new CachedGreetings(Collections.unmodifiableList(new ArrayList<>(greetings)),
+				System.currentTimeMillis() + ttl);
+		synchronized (entries) {
+			if (loadedAt == generation.get()) {
+				entries.put(key, entry);
+			}
+		}
+	}
+
+	public void invalidate() {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			entries.clear();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private static class CachedGreetings {
+		final List<Greetings> greetings;
+		final long expiresAt;
+
+		CachedGreetings(List<Greetings> greetings, long expiresAt) {
+			this.greetings = greetings;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package org.superbiz.nosql.mongodb;
+
+import java.lang.reflect.Field;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.MongoClient;
+
+/**
+ * Resolves and prepares the greetings collection once per application, when it starts: codecs are installed and
+ * indexes created. Existing greetings are kept unless the +greetingsResetOnStartup+ env entry is +true+. A missing
+ * collection is created capped to +greetingsCappedSize+ bytes when that env entry is set.
+ */
+@Singleton
+@Startup
+public class GreetingsCollectionBootstrap {
+
+	@Resource(name = "mongoClient")
+	private MongoClient mongoClient;
+
+	@Resource(name = "greetingsResetOnStartup")
+	private Boolean resetOnStartup = false;
+
+	@Resource(name = "greetingsCappedSize")
+	private Long cappedSize = 0L;
+
+	private DB db;
+	private DBCollection greetingsCollection;
+
+	@PostConstruct
+	private void initDB() {
+		db = mongoClient.getDB("greetingsDB");
+		greetingsCollection = db.getCollection("greetings");
+		greetingsCollection.setDBEncoderFactory(GreetingsEncoder.FACTORY);
+		greetingsCollection.setDBDecoderFactory(GreetingsDecoder.FACTORY);
+
+		if (resetOnStartup) {
+			greetingsCollection.drop();
+		}
+		createCappedCollection();
+		ensureIndexes();
+	}
+
+	@Lock(LockType.READ)
+	public DBCollection getCollection() {
+		return greetingsCollection;
+	}
+
+	/**
+	 * Removes every greeting by dropping the collection, which is a single metadata operation on the server instead of
+	 * one delete per document, and then recreates its indexes.
+	 */
+	@Lock(LockType.WRITE)
+	public void recreate() {
+		greetingsCollection.drop();
+		createCappedCollection();
+		ensureIndexes();
+	}
+
+	/**
+	 * Whether the greetings collection is capped, which is required to follow new greetings with {@link GreetingsFeed}.
+	 */
+	@Lock(LockType.READ)
+	public boolean isCapped() {
+		return greetingsCollection.isCapped();
+	}
+
+	// when greetingsCappedSize (bytes) is set, a missing collection is created capped so it can be tailed
+	private void createCappedCollection() {
+		if (cappedSize > 0 && !db.collectionExists(greetingsCollection.getName())) {
+			db.createCollection(greetingsCollection.getName(),
+					new BasicDBObject("capped", true).append("size", cappedSize));
+		}
+	}
+
+	private void ensureIndexes() {
+		for (Field field : Greetings.class.getDeclaredFields()) {
+			if (field.isAnnotationPresent(Indexed.class)) {
+				greetingsCollection.ensureIndex(new BasicDBObject(field.getName(), 1).append("_id", 1));
+			}
+		}
+	}
+
+}
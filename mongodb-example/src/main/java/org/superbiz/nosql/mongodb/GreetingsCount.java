@@ -0,0 +1,36 @@
+package org.superbiz.nosql.mongodb;
+
+import java.io.Serializable;
+
+import com.mongodb.DBObject;
+
+public class GreetingsCount implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String message;
+    private final long count;
+
+    public GreetingsCount(String message, long count) {
+        this.message = message;
+        this.count = count;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    static GreetingsCount fromDBObject(DBObject doc) {
+        return new GreetingsCount((String) doc.get("_id"), ((Number) doc.get("count")).longValue());
+    }
+
+    @Override
+    public String toString() {
+        return this.message + " (" + this.count + ")";
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.superbiz.nosql.mongodb;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+import com.mongodb.DBCursor;
+
+/**
+ * Forward-only view over a +DBCursor+ that converts each document into a {@link Greetings} only when it is requested,
+ * so at most one batch of documents is held in memory. Callers must {@link #close()} it to release the server cursor.
+ */
+public class GreetingsCursor implements Iterator<Greetings>, Iterable<Greetings>, Closeable {
+
+    private final DBCursor cursor;
+
+    GreetingsCursor(DBCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor.hasNext();
+    }
+
+    @Override
+    public Greetings next() {
+        return Greetings.fromDBObject(cursor.next());
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("GreetingsCursor is read-only");
+    }
+
+    @Override
+    public Iterator<Greetings> iterator() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+
+}
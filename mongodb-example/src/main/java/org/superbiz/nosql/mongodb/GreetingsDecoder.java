@@ -0,0 +1,152 @@
+package org.superbiz.nosql.mongodb;
+
+import static org.superbiz.nosql.mongodb.GreetingsEncoder.ID_NAME;
+import static org.superbiz.nosql.mongodb.GreetingsEncoder.MESSAGE_NAME;
+import static org.superbiz.nosql.mongodb.GreetingsEncoder.NULL;
+import static org.superbiz.nosql.mongodb.GreetingsEncoder.OBJECT_ID;
+import static org.superbiz.nosql.mongodb.GreetingsEncoder.STRING;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.bson.BSONCallback;
+import org.bson.BSONObject;
+import org.bson.types.ObjectId;
+
+import com.mongodb.DBCallback;
+import com.mongodb.DBCollection;
+import com.mongodb.DBDecoder;
+import com.mongodb.DBDecoderFactory;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+
+/**
+ * Reads greetings documents from BSON bytes into {@link GreetingsDocument}s without going through a map. A document
+ * with any field other than +_id+ and +message+ (an error reply for example) is decoded by the driver's
+ * +DefaultDBDecoder+ instead. One decoder is created per cursor and reuses its read buffer across documents.
+ */
+public class GreetingsDecoder implements DBDecoder {
+
+    public static final DBDecoderFactory FACTORY = new DBDecoderFactory() {
+        @Override
+        public DBDecoder create() {
+            return new GreetingsDecoder();
+        }
+    };
+
+    private byte[] buffer = new byte[256];
+    private DefaultDBDecoder fallback;
+
+    @Override
+    public DBObject decode(InputStream in, DBCollection collection) throws IOException {
+        readFully(in, buffer, 0, 4);
+        int size = readInt(buffer, 0);
+        if (size > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(size, buffer.length * 2));
+        }
+        readFully(in, buffer, 4, size - 4);
+        return decode(buffer, size, collection);
+    }
+
+    @Override
+    public DBObject decode(byte[] b, DBCollection collection) {
+        return decode(b, readInt(b, 0), collection);
+    }
+
+    private DBObject decode(byte[] b, int size, DBCollection collection) {
+        Greetings greetings = new Greetings();
+        int end = size - 1;
+        int pos = 4;
+
+        while (pos < end) {
+            byte type = b[pos++];
+            int nameStart = pos;
+            while (b[pos] != 0) {
+                pos++;
+            }
+            int nameEnd = ++pos;
+
+            if (type == OBJECT_ID && isName(b, nameStart, nameEnd, ID_NAME)) {
+                greetings.setId(new ObjectId(readIntBE(b, pos), readIntBE(b, pos + 4), readIntBE(b, pos + 8)));
+                pos += 12;
+            } else if (type == STRING && isName(b, nameStart, nameEnd, MESSAGE_NAME)) {
+                int length = readInt(b, pos);
+                greetings.setMessage(new String(b, pos + 4, length - 1, StandardCharsets.UTF_8));
+                pos += 4 + length;
+            } else if (type == NULL && isName(b, nameStart, nameEnd, MESSAGE_NAME)) {
+                greetings.setMessage(null);
+            } else {
+                return fallback().decode(Arrays.copyOf(b, size), collection);
+            }
+        }
+
+        return new GreetingsDocument(greetings);
+    }
+
+    @Override
+    public DBCallback getDBCallback(DBCollection collection) {
+        return fallback().getDBCallback(collection);
+    }
+
+    @Override
+    public BSONObject readObject(byte[] b) {
+        return decode(b, (DBCollection) null);
+    }
+
+    @Override
+    public BSONObject readObject(InputStream in) throws IOException {
+        return decode(in, (DBCollection) null);
+    }
+
+    @Override
+    public int decode(byte[] b, BSONCallback callback) {
+        return fallback().decode(b, callback);
+    }
+
+    @Override
+    public int decode(InputStream in, BSONCallback callback) throws IOException {
+        return fallback().decode(in, callback);
+    }
+
+    private DefaultDBDecoder fallback() {
+        if (fallback == null) {
+            fallback = new DefaultDBDecoder();
+        }
+        return fallback;
+    }
+
+    private static boolean isName(byte[] b, int start, int end, byte[] name) {
+        if (end - start != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (b[start + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] b, int pos) {
+        return (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8 | (b[pos + 2] & 0xFF) << 16 | (b[pos + 3] & 0xFF) << 24;
+    }
+
+    private static int readIntBE(byte[] b, int pos) {
+        return (b[pos] & 0xFF) << 24 | (b[pos + 1] & 0xFF) << 16 | (b[pos + 2] & 0xFF) << 8 | (b[pos + 3] & 0xFF);
+    }
+
+    private static void readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int read = in.read(b, off, len);
+            if (read < 0) {
+                throw new EOFException("Truncated greetings document");
+            }
+            off += read;
+            len -= read;
+        }
+    }
+
+}
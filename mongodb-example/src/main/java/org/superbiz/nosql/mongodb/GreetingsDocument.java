@@ -0,0 +1,123 @@
+package org.superbiz.nosql.mongodb;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.BSONObject;
+import org.bson.types.ObjectId;
+
+import com.mongodb.DBObject;
+
+/**
+ * +DBObject+ view over a {@link Greetings} instance. Fields are read from and written to the wrapped instance directly,
+ * so no intermediate map is built. The driver still sees a regular document and can assign the +_id+ on insert.
+ * Encoding and decoding are done by {@link GreetingsEncoder} and {@link GreetingsDecoder}.
+ */
+public class GreetingsDocument implements DBObject {
+
+    static final String ID = "_id";
+    static final String MESSAGE = "message";
+
+    private static final Set<String> KEYS = Collections.unmodifiableSet(
+            new LinkedHashSet<>(Arrays.asList(ID, MESSAGE)));
+
+    private final Greetings greetings;
+    private boolean partial;
+
+    public GreetingsDocument(Greetings greetings) {
+        this.greetings = greetings;
+    }
+
+    public Greetings getGreetings() {
+        return greetings;
+    }
+
+    @Override
+    public Object put(String key, Object v) {
+        Object previous = get(key);
+        if (ID.equals(key)) {
+            greetings.setId((ObjectId) v);
+        } else if (MESSAGE.equals(key)) {
+            greetings.setMessage((String) v);
+        } else {
+            throw new IllegalArgumentException("Greetings have no field " + key);
+        }
+        return previous;
+    }
+
+    @Override
+    public void putAll(BSONObject o) {
+        for (String key : o.keySet()) {
+            put(key, o.get(key));
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void putAll(Map m) {
+        for (Object key : m.keySet()) {
+            put((String) key, m.get(key));
+        }
+    }
+
+    @Override
+    public Object get(String key) {
+        if (ID.equals(key)) {
+            return greetings.getId();
+        }
+        if (MESSAGE.equals(key)) {
+            return greetings.getMessage();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Map toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(ID, greetings.getId());
+        map.put(MESSAGE, greetings.getMessage());
+        return map;
+    }
+
+    @Override
+    public Object removeField(String key) {
+        return put(key, null);
+    }
+
+    @Override
+    @Deprecated
+    public boolean containsKey(String s) {
+        return containsField(s);
+    }
+
+    @Override
+    public boolean containsField(String s) {
+        return KEYS.contains(s);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return KEYS;
+    }
+
+    @Override
+    public void markAsPartialObject() {
+        partial = true;
+    }
+
+    @Override
+    public boolean isPartialObject() {
+        return partial;
+    }
+
+    @Override
+    public String toString() {
+        return "{ \"_id\" : " + greetings.getId() + " , \"message\" : \"" + greetings.getMessage() + "\"}";
+    }
+
+}
@@ -0,0 +1,116 @@
+package org.superbiz.nosql.mongodb;
+
+import java.nio.charset.StandardCharsets;
+
+import org.bson.BSONObject;
+import org.bson.io.OutputBuffer;
+import org.bson.types.ObjectId;
+
+import com.mongodb.DBEncoder;
+import com.mongodb.DBEncoderFactory;
+import com.mongodb.DefaultDBEncoder;
+
+/**
+ * Writes {@link GreetingsDocument}s straight to the BSON output buffer. Any other document, like queries or index
+ * specifications sent through the same collection, is handed to the driver's +DefaultDBEncoder+.
+ */
+public class GreetingsEncoder implements DBEncoder {
+
+    public static final DBEncoderFactory FACTORY = new DBEncoderFactory() {
+        @Override
+        public DBEncoder create() {
+            return new GreetingsEncoder();
+        }
+    };
+
+    static final byte STRING = 0x02;
+    static final byte OBJECT_ID = 0x07;
+    static final byte NULL = 0x0A;
+
+    static final byte[] ID_NAME = cString(GreetingsDocument.ID);
+    static final byte[] MESSAGE_NAME = cString(GreetingsDocument.MESSAGE);
+
+    private DefaultDBEncoder fallback;
+
+    @Override
+    public int writeObject(OutputBuffer buf, BSONObject o) {
+        if (!(o instanceof GreetingsDocument)) {
+            if (fallback == null) {
+                fallback = new DefaultDBEncoder();
+            }
+            return fallback.writeObject(buf, o);
+        }
+
+        Greetings greetings = ((GreetingsDocument) o).getGreetings();
+        int start = buf.getPosition();
+        buf.writeInt(0);
+
+        ObjectId id = greetings.getId();
+        if (id != null) {
+            buf.write(OBJECT_ID);
+            buf.write(ID_NAME);
+            buf.writeIntBE(id._time());
+            buf.writeIntBE(id._machine());
+            buf.writeIntBE(id._inc());
+        }
+
+        String message = greetings.getMessage();
+        if (message == null) {
+            buf.write(NULL);
+            buf.write(MESSAGE_NAME);
+        } else {
+            buf.write(STRING);
+            buf.write(MESSAGE_NAME);
+            writeString(buf, message);
+        }
+
+        buf.write(0);
+        int size = buf.getPosition() - start;
+        buf.writeInt(start, size);
+        return size;
+    }
+
+    // BSON string: int32 byte length including the trailing zero, UTF-8 bytes, zero. The length is patched afterwards
+    // so the string is walked only once and never copied into a byte array.
+    private static void writeString(OutputBuffer buf, String s) {
+        int lengthPosition = buf.getPosition();
+        buf.writeInt(0);
+
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            int c = s.charAt(i);
+            if (c < 0x80) {
+                buf.write(c);
+                length += 1;
+            } else if (c < 0x800) {
+                buf.write(0xC0 | (c >> 6));
+                buf.write(0x80 | (c & 0x3F));
+                length += 2;
+            } else if (Character.isHighSurrogate((char) c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, s.charAt(++i));
+                buf.write(0xF0 | (c >> 18));
+                buf.write(0x80 | ((c >> 12) & 0x3F));
+                buf.write(0x80 | ((c >> 6) & 0x3F));
+                buf.write(0x80 | (c & 0x3F));
+                length += 4;
+            } else {
+                buf.write(0xE0 | (c >> 12));
+                buf.write(0x80 | ((c >> 6) & 0x3F));
+                buf.write(0x80 | (c & 0x3F));
+                length += 3;
+            }
+        }
+
+        buf.write(0);
+        buf.writeInt(lengthPosition, length + 1);
+    }
+
+    private static byte[] cString(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] cString = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, cString, 0, bytes.length);
+        return cString;
+    }
+
+}
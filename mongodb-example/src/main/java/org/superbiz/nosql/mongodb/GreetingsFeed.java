@@ -0,0 +1,212 @@
+package org.superbiz.nosql.mongodb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import org.bson.types.ObjectId;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.Bytes;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+/**
+ * Pushes newly inserted greetings to subscribers. A single tailable, await-data cursor follows the capped greetings
+ * collection (see +greetingsCappedSize+ in {@link GreetingsCollectionBootstrap}) and copies each new greeting into the
+ * bounded buffer of every {@link GreetingsSubscription}, so subscribers never rescan the collection.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class GreetingsFeed {
+
+	private static final Logger LOGGER = Logger.getLogger(GreetingsFeed.class.getName());
+
+	static final int DEFAULT_BUFFER_SIZE = 1000;
+	static final long RETRY_DELAY = 500;
+
+	private static final DBObject BY_ID = new BasicDBObject("_id", 1);
+	private static final DBObject NEWEST_FIRST = new BasicDBObject("$natural", -1);
+	private static final DBObject OLDEST_FIRST = new BasicDBObject("$natural", 1);
+
+	@Resource(name = "greetingsFeedBufferSize")
+	private Integer bufferSize = DEFAULT_BUFFER_SIZE;
+
+	@EJB
+	private GreetingsCollectionBootstrap greetingsCollectionBootstrap;
+
+	@Resource
+	private TimerService timerService;
+
+	private final List<GreetingsSubscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean running = new AtomicBoolean();
+	private volatile DBCursor tail;
+
+	/**
+	 * Starts following the collection, from its newest greeting, when it is capped. The timeout callback tails it on a
+	 * timer thread until the application stops.
+	 */
+	@PostConstruct
+	private void start() {
+		if (greetingsCollectionBootstrap.isCapped()) {
+			running.set(true);
+			timerService.createSingleActionTimer(0, new TimerConfig(newestId(), false));
+		}
+	}
+
+	public GreetingsSubscription subscribe() {
+		return subscribe(null);
+	}
+
+	/**
+	 * Subscribes to greetings inserted from now on. When +lastSeenId+ is given, greetings inserted after it that are
+	 * still in the capped collection are delivered first; those that do not fit the buffer are counted in
+	 * {@link GreetingsSubscription#getDropped()}.
+	 */
+	public GreetingsSubscription subscribe(ObjectId lastSeenId) {
+		if (!greetingsCollectionBootstrap.isCapped()) {
+			throw new IllegalStateException("Greetings can only be followed on a capped collection, set greetingsCappedSize");
+		}
+
+		GreetingsSubscription subscription = new GreetingsSubscription(lastSeenId, bufferSize);
+		subscriptions.add(subscription);
+		if (lastSeenId == null) {
+			subscription.resumed(Collections.<Greetings>emptyList(), 0);
+		} else {
+			backfill(subscription, lastSeenId);
+		}
+		return subscription;
+	}
+
+	public void unsubscribe(GreetingsSubscription subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	/**
+	 * Tails the collection from the first greeting inserted after the one given as timer info until the application
+	 * stops.
+	 */
+	@Timeout
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	private void follow(Timer timer) {
+		DBCollection collection = greetingsCollectionBootstrap.getCollection();
+		ObjectId lastId = (ObjectId) timer.getInfo();
+
+		while (running.get()) {
+			DBCursor cursor = collection.find()
+					.addOption(Bytes.QUERYOPTION_TAILABLE)
+					.addOption(Bytes.QUERYOPTION_AWAITDATA);
+			tail = cursor;
+
+			try {
+				long skip = lastId == null ? 0 : positionOf(collection, lastId);
+				while (running.get() && cursor.hasNext()) {
+					DBObject document = cursor.next();
+					if (skip > 0) {
+						skip = lastId.equals(document.get("_id")) ? 0 : skip - 1;
+						continue;
+					}
+					Greetings greetings = Greetings.fromDBObject(document);
+					lastId = greetings.getId();
+					for (GreetingsSubscription subscription : subscriptions) {
+						subscription.offer(greetings);
+					}
+				}
+			} catch (MongoException e) {
+				if (running.get()) {
+					LOGGER.log(Level.WARNING, "Greetings tailable cursor failed, reopening it", e);
+				}
+			} finally {
+				cursor.close();
+			}
+
+			// a tailable cursor over an empty collection, or one that fell off the end of the capped collection, is dead
+			pause();
+		}
+	}
+
+	@PreDestroy
+	private void stop() {
+		running.set(false);
+		DBCursor cursor = tail;
+		if (cursor != null) {
+			cursor.close();
+		}
+	}
+
+	// ObjectIds generated by different clients are not inserted in order, so greetings after +lastSeenId+ are the ones
+	// that follow it in the capped collection rather than those with a greater id
+	private void backfill(GreetingsSubscription subscription, ObjectId lastSeenId) {
+		DBCollection collection = greetingsCollectionBootstrap.getCollection();
+		long skip = positionOf(collection, lastSeenId);
+		List<Greetings> greetings = new ArrayList<>();
+		long truncated = 0;
+
+		DBCursor cur = collection.find().sort(OLDEST_FIRST);
+		try {
+			for (DBObject document : cur) {
+				if (skip > 0) {
+					skip = lastSeenId.equals(document.get("_id")) ? 0 : skip - 1;
+				} else if (greetings.size() < bufferSize) {
+					greetings.add(Greetings.fromDBObject(document));
+				} else {
+					truncated++;
+				}
+			}
+		} finally {
+			cur.close();
+		}
+
+		subscription.resumed(greetings, truncated);
+	}
+
+	/**
+	 * Upper bound of the number of greetings to skip, in insertion order, to get past +id+: the size of the collection
+	 * while +id+ is in it, zero once it has been pushed out and every greeting left came after it.
+	 */
+	private long positionOf(DBCollection collection, ObjectId id) {
+		long size = collection.count();
+		if (collection.findOne(new BasicDBObject("_id", id), BY_ID) == null) {
+			LOGGER.warning("Greeting " + id + " is no longer in the capped collection, greetings inserted right after it were missed");
+			return 0;
+		}
+		return size;
+	}
+
+	private ObjectId newestId() {
+		DBCursor cur = greetingsCollectionBootstrap.getCollection().find(new BasicDBObject(), BY_ID).sort(NEWEST_FIRST).limit(1);
+		try (GreetingsCursor newest = new GreetingsCursor(cur)) {
+			return newest.hasNext() ? newest.next().getId() : null;
+		}
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(RETRY_DELAY);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running.set(false);
+		}
+	}
+
+}
@@ -1,55 +1,286 @@
 package org.superbiz.nosql.mongodb;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.inject.Named;
 
+import org.bson.types.ObjectId;
+
+import com.mongodb.AggregationOutput;
 import com.mongodb.BasicDBObject;
-import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
-import com.mongodb.MongoClient;
+import com.mongodb.WriteConcern;
 
 @Named
 @Stateless
 public class GreetingsSessionBean {
 
-	@Resource(name = "mongoClient")
-	private MongoClient mongoClient;
+	static final int DEFAULT_BATCH_SIZE = 500;
+	static final int DEFAULT_INSERT_CHUNK_SIZE = 1000;
+
+	private static final DBObject GREETINGS_FIELDS = new BasicDBObject("_id", 1).append("message", 1);
+	private static final DBObject MESSAGE_FIELD = new BasicDBObject("message", 1).append("_id", 0);
+	private static final DBObject BY_ID = new BasicDBObject("_id", 1);
+	private static final DBObject BY_MESSAGE = new BasicDBObject("message", 1);
+
+	@Resource(name = "greetingsBatchSize")
+	private Integer batchSize = DEFAULT_BATCH_SIZE;
+
+	@Resource(name = "greetingsInsertChunkSize")
+	private Integer insertChunkSize = DEFAULT_INSERT_CHUNK_SIZE;
+
+	@EJB
+	private GreetingsCollectionBootstrap greetingsCollectionBootstrap;
+
+	@EJB
+	private GreetingsCache greetingsCache;
 
 	DBCollection greetingsCollection;
 
 	@PostConstruct
 	private void initDB() {
-		DB db = mongoClient.getDB("greetingsDB");
-		greetingsCollection = db.getCollection("greetings");
-		greetingsCollection.remove(new BasicDBObject());
+		greetingsCollection = greetingsCollectionBootstrap.getCollection();
 	}
 
 	public void createPerson(Greetings greetings) {
-		BasicDBObject doc = greetings.toDBObject();
-		greetingsCollection.insert(doc);
+		greetingsCollection.insert(new GreetingsDocument(greetings));
+		greetingsCache.invalidate();
+	}
+
+	// a call within the bean does not go through the container, so both overloads need the attribute
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public int createGreetings(Collection<Greetings> greetings) {
+		return createGreetings(greetings, WriteConcern.ACKNOWLEDGED);
+	}
+
+	/**
+	 * Inserts all greetings using one batched insert per +greetingsInsertChunkSize+ documents. Inserts are unordered:
+	 * a failing document does not stop the rest of its chunk. Use +WriteConcern.UNACKNOWLEDGED+ for fire-and-forget.
+	 *
+	 * Returns the number of greetings written, or sent when the write concern is unacknowledged. A chunk with a failing
+	 * document, like a duplicate +_id+, throws once the whole chunk has been tried: the server only reports the last
+	 * error of an unordered insert, so the other documents of that chunk may be written. Their ids are set on the
+	 * greetings, {@link #findExistingIds(Collection)} tells which ones made it in.
+	 */
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public int createGreetings(Collection<Greetings> greetings, WriteConcern writeConcern) {
+		WriteConcern unordered = writeConcern.continueOnErrorForInsert(true);
+		List<DBObject> chunk = new ArrayList<>(Math.min(insertChunkSize, greetings.size()));
+		int inserted = 0;
+
+		try {
+			for (Greetings g : greetings) {
+				chunk.add(new GreetingsDocument(g)); // ids assigned by the driver land on g directly
+				if (chunk.size() == insertChunkSize) {
+					inserted += insertChunk(chunk, unordered);
+				}
+			}
+			if (!chunk.isEmpty()) {
+				inserted += insertChunk(chunk, unordered);
+			}
+		} finally {
+			greetingsCache.invalidate();
+		}
+
+		return inserted;
+	}
+
+	private int insertChunk(List<DBObject> chunk, WriteConcern writeConcern) {
+		try {
+			greetingsCollection.insert(chunk, writeConcern);
+			return chunk.size();
+		} finally {
+			chunk.clear();
+		}
+	}
+
+	/**
+	 * Those of +ids+ stored in the collection.
+	 */
+	public Set<ObjectId> findExistingIds(Collection<ObjectId> ids) {
+		Set<ObjectId> existing = new HashSet<>();
+		DBCursor cur = greetingsCollection.find(new BasicDBObject("_id", new BasicDBObject("$in", ids)), BY_ID);
+		try {
+			for (DBObject document : cur) {
+				existing.add((ObjectId) document.get("_id"));
+			}
+		} finally {
+			cur.close();
+		}
+		return existing;
 	}
 
 	public List<Greetings> getGreetings() {
-		List<Greetings> greetings = new ArrayList<>();
-		
-		DBCursor cur = greetingsCollection.find();
+		List<Greetings> greetings = greetingsCache.get("all");
+		if (greetings != null) {
+			return greetings;
+		}
+
+		long generation = greetingsCache.generation();
+		greetings = new ArrayList<>();
 		
-		for (DBObject dbo : cur.toArray()) {
-			greetings.add(Greetings.fromDBObject(dbo));
+		try (GreetingsCursor cur = streamGreetings()) {
+			for (Greetings g : cur) {
+				greetings.add(g);
+			}
 		}
 
+		greetingsCache.put("all", generation, greetings);
 		return greetings;
 	}
 
+	/**
+	 * Keyset pagination: returns at most +limit+ greetings whose +_id+ is greater than +afterId+, in +_id+ order.
+	 * Pass +null+ to get the first page and the id of the last element of a page to get the next one.
+	 */
+	public List<Greetings> getGreetings(ObjectId afterId, int limit) {
+		DBObject query = new BasicDBObject();
+		if (afterId != null) {
+			query.put("_id", new BasicDBObject("$gt", afterId));
+		}
+
+		return readPage("after:" + afterId + ":" + limit, query, limit);
+	}
+
+	public List<Greetings> findByMessage(String message) {
+		return findByMessage(message, null, 0);
+	}
+
+	/**
+	 * Greetings with exactly this message, in +_id+ order. Pages work like {@link #getGreetings(ObjectId, int)} and
+	 * are served from the +{message: 1, _id: 1}+ index. A +limit+ of 0 returns every match.
+	 */
+	public List<Greetings> findByMessage(String message, ObjectId afterId, int limit) {
+		DBObject query = new BasicDBObject("message", message);
+		if (afterId != null) {
+			query.put("_id", new BasicDBObject("$gt", afterId));
+		}
+
+		return readPage("message:" + afterId + ":" + limit + ":" + message, query, limit);
+	}
+
+	/**
+	 * Up to +limit+ messages starting with +prefix+, in message order. Only the indexed +message+ field is requested,
+	 * so the query is answered from the index without reading the documents.
+	 */
+	public List<String> findMessagesByPrefix(String prefix, int limit) {
+		DBObject range = new BasicDBObject("$gte", prefix);
+		String upperBound = prefixUpperBound(prefix);
+		if (upperBound != null) {
+			range.put("$lt", upperBound);
+		}
+
+		DBCursor cur = greetingsCollection.find(new BasicDBObject("message", range), MESSAGE_FIELD)
+				.sort(BY_MESSAGE)
+				.limit(limit)
+				.batchSize(limit);
+
+		List<String> messages = new ArrayList<>(limit);
+		try (GreetingsCursor page = new GreetingsCursor(cur)) {
+			for (Greetings g : page) {
+				messages.add(g.getMessage());
+			}
+		}
+
+		return messages;
+	}
+
+	public long countGreetings() {
+		return greetingsCollection.count();
+	}
+
+	public long countByMessage(String message) {
+		return greetingsCollection.count(new BasicDBObject("message", message));
+	}
+
+	public List<GreetingsCount> countPerMessage() {
+		return aggregateCounts(0);
+	}
+
+	public List<GreetingsCount> topGreetings(int n) {
+		return aggregateCounts(n);
+	}
+
+	// grouping, sorting and limiting run on the server, only one small document per message is sent back
+	private List<GreetingsCount> aggregateCounts(int limit) {
+		DBObject group = new BasicDBObject("$group",
+				new BasicDBObject("_id", "$message").append("count", new BasicDBObject("$sum", 1)));
+		DBObject sort = new BasicDBObject("$sort", new BasicDBObject("count", -1).append("_id", 1));
+
+		AggregationOutput output = limit > 0
+				? greetingsCollection.aggregate(group, sort, new BasicDBObject("$limit", limit))
+				: greetingsCollection.aggregate(group, sort);
+
+		List<GreetingsCount> counts = new ArrayList<>();
+		for (DBObject result : output.results()) {
+			counts.add(GreetingsCount.fromDBObject(result));
+		}
+
+		return counts;
+	}
+
+	private List<Greetings> readPage(String key, DBObject query, int limit) {
+		List<Greetings> greetings = greetingsCache.get(key);
+		if (greetings != null) {
+			return greetings;
+		}
+
+		long generation = greetingsCache.generation();
+		DBCursor cur = greetingsCollection.find(query, GREETINGS_FIELDS)
+				.sort(BY_ID)
+				.limit(limit);
+		if (limit > 0) {
+			cur.batchSize(limit);
+		}
+
+		greetings = new ArrayList<>();
+		try (GreetingsCursor page = new GreetingsCursor(cur)) {
+			for (Greetings g : page) {
+				greetings.add(g);
+			}
+		}
+
+		greetingsCache.put(key, generation, greetings);
+		return greetings;
+	}
+
+	// smallest string greater than every string starting with prefix, null when there is none
+	private static String prefixUpperBound(String prefix) {
+		for (int i = prefix.length() - 1; i >= 0; i--) {
+			char c = prefix.charAt(i);
+			if (c != Character.MAX_VALUE) {
+				return prefix.substring(0, i) + (char) (c + 1);
+			}
+		}
+		return null;
+	}
+
+	public GreetingsCursor streamGreetings() {
+		return streamGreetings(batchSize);
+	}
+
+	/**
+	 * Streams the whole collection fetching +batchSize+ documents per round trip. The returned cursor must be closed.
+	 */
+	public GreetingsCursor streamGreetings(int batchSize) {
+		return new GreetingsCursor(greetingsCollection.find().batchSize(batchSize));
+	}
+
 	public void removeGreetings() {
-	    greetingsCollection.remove(new BasicDBObject());
+	    greetingsCollectionBootstrap.recreate();
+	    greetingsCache.invalidate();
 	}
 	
 }
@@ -0,0 +1,105 @@
+package org.superbiz.nosql.mongodb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.types.ObjectId;
+
+/**
+ * Bounded buffer of new greetings delivered by {@link GreetingsFeed} to one subscriber. When the subscriber falls
+ * behind and the buffer is full, further greetings are dropped and counted; the subscriber can then resubscribe from
+ * {@link #getLastSeenId()} to catch up from the collection.
+ */
+public class GreetingsSubscription {
+
+    private final BlockingQueue<Greetings> buffer;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile ObjectId lastSeenId;
+
+    // while resuming, live greetings are parked until the backfill from the collection is done
+    private List<Greetings> parked = new ArrayList<>();
+
+    GreetingsSubscription(ObjectId lastSeenId, int bufferSize) {
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.lastSeenId = lastSeenId;
+    }
+
+    /**
+     * Next greeting, waiting up to the given time for one to arrive. Returns +null+ on timeout.
+     */
+    public Greetings poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return seen(buffer.poll(timeout, unit));
+    }
+
+    public Greetings poll() {
+        return seen(buffer.poll());
+    }
+
+    public int drainTo(Collection<Greetings> greetings) {
+        List<Greetings> drained = new ArrayList<>(buffer.size());
+        int count = buffer.drainTo(drained);
+        if (count > 0) {
+            seen(drained.get(count - 1));
+        }
+        greetings.addAll(drained);
+        return count;
+    }
+
+    public ObjectId getLastSeenId() {
+        return lastSeenId;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    synchronized void offer(Greetings greetings) {
+        if (parked != null) {
+            if (parked.size() < buffer.remainingCapacity()) {
+                parked.add(greetings);
+            } else {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+        if (!buffer.offer(greetings)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Ends the backfill with the greetings read from the collection and the number of those that did not fit.
+     */
+    synchronized void resumed(List<Greetings> backfill, long truncated) {
+        dropped.addAndGet(truncated);
+        Set<ObjectId> delivered = new HashSet<>();
+        for (Greetings greetings : backfill) {
+            if (buffer.offer(greetings)) {
+                delivered.add(greetings.getId());
+            } else {
+                dropped.incrementAndGet();
+            }
+        }
+        for (Greetings greetings : parked) {
+            if (!delivered.contains(greetings.getId()) && !buffer.offer(greetings)) {
+                dropped.incrementAndGet();
+            }
+        }
+        parked = null;
+    }
+
+    private Greetings seen(Greetings greetings) {
+        if (greetings != null) {
+            lastSeenId = greetings.getId();
+        }
+        return greetings;
+    }
+
+}
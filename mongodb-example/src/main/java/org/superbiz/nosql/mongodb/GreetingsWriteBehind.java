@@ -0,0 +1,200 @@
+package org.superbiz.nosql.mongodb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+
+import org.bson.types.ObjectId;
+
+import com.mongodb.WriteConcern;
+
+/**
+ * Write-behind front end for {@link GreetingsSessionBean}. Greetings are offered to a bounded in-memory queue and
+ * written in batches, either as soon as +greetingsWriteBehindFlushSize+ greetings are pending or every
+ * +greetingsWriteBehindFlushInterval+ milliseconds, whatever comes first. Pending greetings are written on shutdown.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class GreetingsWriteBehind {
+
+	private static final Logger LOGGER = Logger.getLogger(GreetingsWriteBehind.class.getName());
+
+	static final int DEFAULT_CAPACITY = 10000;
+	static final int DEFAULT_FLUSH_SIZE = 1000;
+	static final long DEFAULT_FLUSH_INTERVAL = 1000;
+	static final long DEFAULT_OFFER_TIMEOUT = 500;
+
+	@Resource(name = "greetingsWriteBehindCapacity")
+	private Integer capacity = DEFAULT_CAPACITY;
+
+	@Resource(name = "greetingsWriteBehindFlushSize")
+	private Integer flushSize = DEFAULT_FLUSH_SIZE;
+
+	@Resource(name = "greetingsWriteBehindFlushInterval")
+	private Long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+	@Resource(name = "greetingsWriteBehindOfferTimeout")
+	private Long offerTimeout = DEFAULT_OFFER_TIMEOUT;
+
+	@EJB
+	private GreetingsSessionBean greetingsSessionBean;
+
+	@Resource
+	private SessionContext sessionContext;
+
+	@Resource
+	private TimerService timerService;
+
+	private BlockingQueue<Greetings> queue;
+
+	private final AtomicBoolean flushing = new AtomicBoolean();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	@PostConstruct
+	private void start() {
+		queue = new ArrayBlockingQueue<>(capacity);
+		timerService.createIntervalTimer(flushInterval, flushInterval, new TimerConfig(null, false));
+	}
+
+	/**
+	 * Queues the greeting for a later batched insert. When the queue is full the caller waits up to
+	 * +greetingsWriteBehindOfferTimeout+ milliseconds for room, and +false+ is returned if there is still none.
+	 */
+	public boolean createPerson(Greetings greetings) {
+		boolean queued;
+		try {
+			queued = queue.offer(greetings, offerTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+		if (queue.size() >= flushSize && flushing.compareAndSet(false, true)) {
+			sessionContext.getBusinessObject(GreetingsWriteBehind.class).drain();
+		}
+
+		return queued;
+	}
+
+	public int getPending() {
+		return queue.size();
+	}
+
+	@Asynchronous
+	public void drain() {
+		try {
+			writePending();
+		} finally {
+			flushing.set(false);
+		}
+	}
+
+	@Timeout
+	private void flushOnInterval() {
+		if (flushing.compareAndSet(false, true)) {
+			drain();
+		}
+	}
+
+	/**
+	 * Synchronously writes everything queued so far and returns the number of greetings written.
+	 */
+	public int flush() {
+		return writePending();
+	}
+
+	@PreDestroy
+	private void stop() {
+		writePending();
+	}
+
+	/**
+	 * Greetings given up on since startup, because a batch could not be written and there was no room left to queue
+	 * it again.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Writes the queue batch by batch. A batch that fails goes back to the queue for the next flush, and the flush
+	 * stops there rather than retrying in a loop against a server that is failing.
+	 */
+	private int writePending() {
+		List<Greetings> batch = new ArrayList<>(flushSize);
+		int written = 0;
+
+		while (queue.drainTo(batch, flushSize) > 0) {
+			try {
+				written += greetingsSessionBean.createGreetings(batch, WriteConcern.ACKNOWLEDGED);
+			} catch (RuntimeException e) {
+				requeue(batch, e);
+				break;
+			} finally {
+				batch.clear();
+			}
+		}
+
+		return written;
+	}
+
+	// part of a failed batch may have been written, those greetings are left out so that the retry does not fail on
+	// their ids again
+	private void requeue(List<Greetings> batch, RuntimeException cause) {
+		Set<ObjectId> written = findWritten(batch);
+		int requeued = 0;
+		for (Greetings greetings : batch) {
+			if (!written.contains(greetings.getId()) && queue.offer(greetings)) {
+				requeued++;
+			}
+		}
+		int lost = batch.size() - written.size() - requeued;
+		dropped.addAndGet(lost);
+		LOGGER.log(Level.WARNING, "Writing " + batch.size() + " greetings failed, " + written.size() + " written anyway, "
+				+ requeued + " queued again and " + lost + " dropped", cause);
+	}
+
+	private Set<ObjectId> findWritten(List<Greetings> batch) {
+		List<ObjectId> ids = new ArrayList<>(batch.size());
+		for (Greetings greetings : batch) {
+			if (greetings.getId() != null) {
+				ids.add(greetings.getId());
+			}
+		}
+		if (ids.isEmpty()) {
+			return Collections.emptySet();
+		}
+
+		try {
+			return greetingsSessionBean.findExistingIds(ids);
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.FINE, "Could not tell which greetings were written, queuing the whole batch again", e);
+			return Collections.emptySet();
+		}
+	}
+
+}
@@ -0,0 +1,16 @@
+package org.superbiz.nosql.mongodb;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link Greetings} field that is looked up by value. {@link GreetingsCollectionBootstrap} creates an ascending
+ * +{field: 1, _id: 1}+ index for it at startup, so equality matches can also be paged by +_id+ from the index.
+ */
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface Indexed {
+}
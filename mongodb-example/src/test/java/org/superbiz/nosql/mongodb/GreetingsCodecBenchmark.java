@@ -0,0 +1,95 @@
+package org.superbiz.nosql.mongodb;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBDecoder;
+import com.mongodb.DBEncoder;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+
+/**
+ * Compares the +BasicDBObject+ round trip ({@link Greetings#toDBObject()} / {@link Greetings#fromDBObject}) with
+ * {@link GreetingsEncoder} / {@link GreetingsDecoder}. Not run by the build, launch it with:
+ *
+ * ----
+ * mvn test-compile exec:java -Dexec.mainClass=org.superbiz.nosql.mongodb.GreetingsCodecBenchmark -Dexec.classpathScope=test
+ * ----
+ *
+ * Arguments go to the JMH command line, add +-Dexec.args="-prof gc"+ to see the allocation rate of each path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GreetingsCodecBenchmark {
+
+    private Greetings greetings;
+    private byte[] bytes;
+
+    private final BasicOutputBuffer buffer = new BasicOutputBuffer();
+    private final DBEncoder defaultEncoder = new DefaultDBEncoder();
+    private final DBEncoder greetingsEncoder = new GreetingsEncoder();
+    private final DBDecoder defaultDecoder = new DefaultDBDecoder();
+    private final DBDecoder greetingsDecoder = new GreetingsDecoder();
+
+    @Setup
+    public void setUp() {
+        greetings = new Greetings("Hello World!! Greetings from the benchmark");
+        greetings.setId(new ObjectId());
+
+        BasicOutputBuffer encoded = new BasicOutputBuffer();
+        new DefaultDBEncoder().writeObject(encoded, greetings.toDBObject());
+        bytes = encoded.toByteArray();
+    }
+
+    @Benchmark
+    public int encodeBasicDBObject() {
+        buffer.seekStart();
+        return defaultEncoder.writeObject(buffer, greetings.toDBObject());
+    }
+
+    @Benchmark
+    public int encodeGreetingsDocument() {
+        buffer.seekStart();
+        return greetingsEncoder.writeObject(buffer, new GreetingsDocument(greetings));
+    }
+
+    @Benchmark
+    public Greetings decodeBasicDBObject() {
+        return Greetings.fromDBObject(defaultDecoder.decode(bytes, (DBCollection) null));
+    }
+
+    @Benchmark
+    public Greetings decodeGreetingsDocument() {
+        return Greetings.fromDBObject(greetingsDecoder.decode(bytes, (DBCollection) null));
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(GreetingsCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
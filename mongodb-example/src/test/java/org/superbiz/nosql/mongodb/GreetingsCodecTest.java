@@ -0,0 +1,75 @@
+package org.superbiz.nosql.mongodb;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+
+public class GreetingsCodecTest {
+
+    private static final String MESSAGE = "Hola, \u00bfqu\u00e9 tal? \u4f60\u597d \ud83d\ude00";
+
+    @Test
+    public void shouldEncodeSameBytesAsDefaultEncoder() {
+
+        Greetings greetings = new Greetings(MESSAGE);
+        greetings.setId(new ObjectId());
+
+        assertArrayEquals(encodeWithDefaultEncoder(greetings.toDBObject()),
+                encodeWithGreetingsEncoder(new GreetingsDocument(greetings)));
+
+    }
+
+    @Test
+    public void shouldDecodeDocumentsWrittenByDefaultEncoder() throws IOException {
+
+        Greetings greetings = new Greetings(MESSAGE);
+        greetings.setId(new ObjectId());
+        byte[] bytes = encodeWithDefaultEncoder(greetings.toDBObject());
+
+        DBObject decoded = new GreetingsDecoder().decode(new ByteArrayInputStream(bytes), (DBCollection) null);
+
+        assertThat(decoded, instanceOf(GreetingsDocument.class));
+        assertThat(Greetings.fromDBObject(decoded).getId(), is(greetings.getId()));
+        assertThat(Greetings.fromDBObject(decoded).getMessage(), is(MESSAGE));
+
+    }
+
+    @Test
+    public void shouldFallbackToDefaultCodecForOtherDocuments() throws IOException {
+
+        DBObject query = new BasicDBObject("_id", new BasicDBObject("$gt", new ObjectId()));
+        byte[] bytes = encodeWithGreetingsEncoder(query);
+        assertArrayEquals(encodeWithDefaultEncoder(query), bytes);
+
+        DBObject decoded = new GreetingsDecoder().decode(new ByteArrayInputStream(bytes), (DBCollection) null);
+        assertThat(decoded.toMap(), is(new DefaultDBDecoder().decode(bytes, (DBCollection) null).toMap()));
+
+    }
+
+    private static byte[] encodeWithDefaultEncoder(DBObject doc) {
+        BasicOutputBuffer buf = new BasicOutputBuffer();
+        new DefaultDBEncoder().writeObject(buf, doc);
+        return buf.toByteArray();
+    }
+
+    private static byte[] encodeWithGreetingsEncoder(DBObject doc) {
+        BasicOutputBuffer buf = new BasicOutputBuffer();
+        new GreetingsEncoder().writeObject(buf, doc);
+        return buf.toByteArray();
+    }
+
+}
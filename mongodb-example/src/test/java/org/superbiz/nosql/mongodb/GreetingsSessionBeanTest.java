@@ -2,19 +2,25 @@ package org.superbiz.nosql.mongodb;
 
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.ejb.EJB;
 
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
 import org.jboss.shrinkwrap.resolver.api.maven.Maven;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import com.mongodb.WriteConcern;
+
 /**
  * = Apache TomEE and custom Resources 
  *
@@ -59,6 +65,12 @@ import org.junit.runner.RunWith;
 @RunWith(Arquillian.class)
 public class GreetingsSessionBeanTest {
 
+    private static final String CAPPED_COLLECTION = "<ejb-jar><enterprise-beans><session>"
+            + "<ejb-name>GreetingsCollectionBootstrap</ejb-name>"
+            + "<env-entry><env-entry-name>greetingsCappedSize</env-entry-name>"
+            + "<env-entry-type>java.lang.Long</env-entry-type><env-entry-value>16777216</env-entry-value></env-entry>"
+            + "</session></enterprise-beans></ejb-jar>";
+
     @Deployment
     public static WebArchive deploy() {
 
@@ -66,6 +78,15 @@ public class GreetingsSessionBeanTest {
                 .create(WebArchive.class)
                 .addClass(Greetings.class)
                 .addClass(GreetingsSessionBean.class)
+                .addClass(GreetingsCollectionBootstrap.class)
+                .addClass(Indexed.class)
+                .addClass(GreetingsCount.class)
+                .addClasses(GreetingsFeed.class, GreetingsSubscription.class)
+                .addAsWebInfResource(new StringAsset(CAPPED_COLLECTION), "ejb-jar.xml") // <2> greetings collection is capped so it can be followed
+                .addClasses(GreetingsDocument.class, GreetingsEncoder.class, GreetingsDecoder.class)
+                .addClass(GreetingsCursor.class)
+                .addClass(GreetingsWriteBehind.class)
+                .addClass(GreetingsCache.class)
                 .addAsWebInfResource("resources.xml")   // <1> resources.xml is added from classpath to WEB-INF
                 .addAsLibraries(
                         Maven.resolver().loadPomFromFile("pom.xml").resolve("org.mongodb:mongo-java-driver")
@@ -78,6 +99,15 @@ public class GreetingsSessionBeanTest {
     @EJB
     GreetingsSessionBean greetingsSessionBean;
 
+    @EJB
+    GreetingsWriteBehind greetingsWriteBehind;
+
+    @EJB
+    GreetingsCache greetingsCache;
+
+    @EJB
+    GreetingsFeed greetingsFeed;
+
     /**
      * A MongoDB server must be started at _localhost_ manually, but it is not required to create any _db_ nor _collection_
      * because they are automatically created by the driver.
@@ -96,4 +126,159 @@ public class GreetingsSessionBeanTest {
 
     }
 
+    /**
+     * Large collections can be walked page by page. Each page is fetched with an +_id+ range query, so the cost of a page
+     * does not depend on how many pages were read before.
+     * 
+     * include::src/test/java/org/superbiz/nosql/mongodb/GreetingsSessionBeanTest#shouldPageGreetingsByKeyset().java[]
+     */
+    @Test
+    public void shouldPageGreetingsByKeyset() {
+
+        greetingsSessionBean.removeGreetings();
+        for (int i = 0; i < 5; i++) {
+            greetingsSessionBean.createPerson(new Greetings("Hello " + i));
+        }
+
+        List<Greetings> firstPage = greetingsSessionBean.getGreetings(null, 3);                  // <1> First page starts with no id
+        assertThat(firstPage.size(), is(3));
+
+        List<Greetings> secondPage = greetingsSessionBean.getGreetings(
+                firstPage.get(firstPage.size() - 1).getId(), 3);                                 // <2> Next page starts after the last seen id
+        assertThat(secondPage.size(), is(2));
+        assertThat(secondPage, hasItem(new Greetings("Hello 4")));
+
+    }
+
+    /**
+     * Bulk loads should use +createGreetings+, which sends the documents in chunks instead of one round trip per greeting.
+     * 
+     * include::src/test/java/org/superbiz/nosql/mongodb/GreetingsSessionBeanTest#shouldBulkInsertGreetings().java[]
+     */
+    @Test
+    public void shouldBulkInsertGreetings() {
+
+        greetingsSessionBean.removeGreetings();
+
+        List<Greetings> batch = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            batch.add(new Greetings("Bulk " + i));
+        }
+
+        int inserted = greetingsSessionBean.createGreetings(batch, WriteConcern.ACKNOWLEDGED); // <1> The caller chooses the write concern
+        assertThat(inserted, is(2500));
+        assertThat(greetingsSessionBean.getGreetings().size(), is(2500));
+
+    }
+
+    /**
+     * When the caller does not need to wait for +MongoDB+, greetings can be queued in +GreetingsWriteBehind+, which
+     * writes them in batches in the background.
+     * 
+     * include::src/test/java/org/superbiz/nosql/mongodb/GreetingsSessionBeanTest#shouldWriteQueuedGreetingsInBatches().java[]
+     */
+    @Test
+    public void shouldWriteQueuedGreetingsInBatches() {
+
+        greetingsSessionBean.removeGreetings();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(greetingsWriteBehind.createPerson(new Greetings("Queued " + i)), is(true)); // <1> Only an in-memory offer
+        }
+
+        greetingsWriteBehind.flush();                                                           // <2> Force pending greetings out
+        assertThat(greetingsWriteBehind.getPending(), is(0));
+        assertThat(greetingsSessionBean.getGreetings(), hasItem(new Greetings("Queued 9")));
+
+    }
+
+    /**
+     * Reads are served from +GreetingsCache+ until the next write, which invalidates it.
+     * 
+     * include::src/test/java/org/superbiz/nosql/mongodb/GreetingsSessionBeanTest#shouldServeRepeatedReadsFromCache().java[]
+     */
+    @Test
+    public void shouldServeRepeatedReadsFromCache() {
+
+        greetingsSessionBean.removeGreetings();
+        greetingsSessionBean.createPerson(new Greetings("Cached"));
+
+        greetingsSessionBean.getGreetings();
+        long hits = greetingsCache.getHitCount();
+        greetingsSessionBean.getGreetings();                                        // <1> Second read is a cache hit
+        assertThat(greetingsCache.getHitCount(), is(hits + 1));
+
+        greetingsSessionBean.createPerson(new Greetings("Not cached yet"));         // <2> Writes invalidate the cache
+        assertThat(greetingsSessionBean.getGreetings(), hasItem(new Greetings("Not cached yet")));
+
+    }
+
+    /**
+     * Lookups by message are answered by +MongoDB+ using the index declared with +@Indexed+ on +Greetings+, instead of
+     * reading every greeting and filtering in Java.
+     * 
+     * include::src/test/java/org/superbiz/nosql/mongodb/GreetingsSessionBeanTest#shouldFindGreetingsByMessage().java[]
+     */
+    @Test
+    public void shouldFindGreetingsByMessage() {
+
+        greetingsSessionBean.removeGreetings();
+        greetingsSessionBean.createPerson(new Greetings("Hello World!!"));
+        greetingsSessionBean.createPerson(new Greetings("Hello World!!"));
+        greetingsSessionBean.createPerson(new Greetings("Hello Mars!!"));
+        greetingsSessionBean.createPerson(new Greetings("Goodbye World!!"));
+
+        assertThat(greetingsSessionBean.findByMessage("Hello World!!").size(), is(2));             // <1> Exact match
+        assertThat(greetingsSessionBean.findMessagesByPrefix("Hello", 10).size(), is(3));          // <2> Prefix search
+        assertThat(greetingsSessionBean.countByMessage("Hello Mars!!"), is(1L));                   // <3> Counting does not fetch documents
+        assertThat(greetingsSessionBean.countGreetings(), is(4L));
+
+    }
+
+    /**
+     * Statistics are computed by the +MongoDB+ aggregation pipeline and only the per message counts are transferred.
+     * 
+     * include::src/test/java/org/superbiz/nosql/mongodb/GreetingsSessionBeanTest#shouldAggregateGreetingsPerMessage().java[]
+     */
+    @Test
+    public void shouldAggregateGreetingsPerMessage() {
+
+        greetingsSessionBean.removeGreetings();
+        greetingsSessionBean.createPerson(new Greetings("Hello World!!"));
+        greetingsSessionBean.createPerson(new Greetings("Hello World!!"));
+        greetingsSessionBean.createPerson(new Greetings("Hello Mars!!"));
+
+        List<GreetingsCount> top = greetingsSessionBean.topGreetings(1);  // <1> Grouped, sorted and limited on the server
+        assertThat(top.size(), is(1));
+        assertThat(top.get(0).getMessage(), is("Hello World!!"));
+        assertThat(top.get(0).getCount(), is(2L));
+
+        assertThat(greetingsSessionBean.countPerMessage().size(), is(2));
+
+    }
+
+    /**
+     * Instead of polling +getGreetings()+, new greetings can be followed with +GreetingsFeed+. It tails the capped
+     * collection and pushes each new greeting to the buffer of every subscription.
+     * 
+     * include::src/test/java/org/superbiz/nosql/mongodb/GreetingsSessionBeanTest#shouldPushNewGreetingsToSubscribers().java[]
+     */
+    @Test
+    public void shouldPushNewGreetingsToSubscribers() throws InterruptedException {
+
+        greetingsSessionBean.removeGreetings();
+        greetingsSessionBean.createPerson(new Greetings("Before subscribing"));
+
+        GreetingsSubscription subscription = greetingsFeed.subscribe();                 // <1> Only greetings inserted from now on
+        try {
+            greetingsSessionBean.createPerson(new Greetings("After subscribing"));
+
+            Greetings pushed = subscription.poll(10, TimeUnit.SECONDS);
+            assertThat(pushed, is(new Greetings("After subscribing")));
+        } finally {
+            greetingsFeed.unsubscribe(subscription);
+        }
+
+    }
+
 }